@@ -1,52 +1,95 @@
 package cn.edu.hitsz.compiler;
 
 import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.ir.InstructionBuffer;
+import cn.edu.hitsz.compiler.ir.pass.PassManager;
+import cn.edu.hitsz.compiler.lexer.LexerDFA;
 import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.parser.IRGenerator;
 import cn.edu.hitsz.compiler.parser.ProductionCollector;
 import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
 import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
-import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
-import cn.edu.hitsz.compiler.parser.table.TableLoader;
+import cn.edu.hitsz.compiler.parser.table.TableCache;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 import cn.edu.hitsz.compiler.utils.IREmulator;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
 
 public class Main {
     public static void main(String[] args) {
+        // 命令行参数:
+        //   --passes=名字,名字,...  IR 优化流水线, 按给出的顺序运行, 为空时不做优化; 缺省为 PassManager.DEFAULT_PIPELINE
+        //   --verify-ir            在各个 pass 之间检查 IR
+        var passNames = PassManager.DEFAULT_PIPELINE;
+        var verifyIR = false;
+        for (final var arg : args) {
+            if (arg.startsWith("--passes=")) {
+                passNames = Arrays.stream(arg.substring("--passes=".length()).split(",")).filter(name -> !name.isEmpty()).toList();
+            } else if (arg.equals("--verify-ir")) {
+                verifyIR = true;
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
         // 构建符号表以供各部分使用
         TokenKind.loadTokenKinds();
-        final var symbolTable = new SymbolTable();
+        // 词法分析可能并行进行, 因此使用线程安全的符号表
+        final var symbolTable = SymbolTable.concurrent();
 
         // 词法分析
         final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.useDFA(LexerDFA.fromTokenKinds());
+        lexer.enableAsciiFastPath();
         lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
-        lexer.run();
+        // 输入较大时按语句边界切块并行分析, 较小时退化为串行分析
+        lexer.runParallel(ForkJoinPool.commonPool());
         lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
         final var tokens = lexer.getTokens();
         symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
 
-        // 读取第三方程序构造的 LR 分析表
-        final var tableLoader = new TableLoader();
-        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
+        // // 或使用按需分析的 token 流, token 在被语法分析读取时才扫描出来, 并同时写入 token 文件
+        // // 此时符号表在语法分析过程中才逐步建立, 故旧符号表需要在语法分析结束后才能输出
+        // final var tokens = lexer.lazyTokens(FilePathConfig.TOKEN_PATH);
+
+        // 直接从 grammar.txt 构造 LALR(1) 分析表, 不再依赖第三方程序
+        // 编译后的分析表缓存在二进制文件中, 只有文法或码点文件变化时才需要重新构造
+        final var lrTable = TableCache.load(FilePathConfig.LR_TABLE_CACHE_PATH, "lalr", List.of(), () -> {
+            final var tableGenerator = new TableGenerator(TableGenerator.Mode.LALR);
+            tableGenerator.run();
+            return tableGenerator.getTable();
+        });
 
-        // // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
-        // final var tableGenerator = new TableGenerator();
-        // tableGenerator.run();
-        // final var lrTable = tableGenerator.getTable();
-        // lrTable.dumpTable("data/out/lrTable.csv");
+        // // 或将右递归的语句列表按左递归构造, 每条语句结束后立即规约, 栈深度不再随程序长度增长
+        // // 此时语句列表的规约顺序与文法文件不同, 规约列表的输出也随之改变
+        // final var lrTable = TableCache.load(FilePathConfig.LR_TABLE_CACHE_PATH, "lalr-lists", List.of(), () -> {
+        //     final var tableGenerator = new TableGenerator(TableGenerator.Mode.LALR, true);
+        //     tableGenerator.run();
+        //     return tableGenerator.getTable();
+        // });
+
+        // // 或读取第三方程序构造的 LR 分析表
+        // final var lrTable = TableCache.loadCSV(FilePathConfig.LR1_TABLE_PATH, FilePathConfig.LR_TABLE_CACHE_PATH);
 
         // 加载 LR 分析驱动程序
         final var parser = new SyntaxAnalyzer(symbolTable);
         parser.loadTokens(tokens);
         parser.loadLRTable(lrTable);
+        // // 或使用压缩后的分析表, 状态很多时可以显著减少内存占用
+        // parser.loadLRTable(PackedLRTable.pack(lrTable));
+        // // 或由分析表生成专用的分析程序, 需要在 JDK 上运行
+        // parser.loadGeneratedParser(ParserGenerator.compile(lrTable));
 
         // 加入生成规约列表的 Observer
-        final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
+        final var productionCollector = new ProductionCollector(lrTable.getBeginProduction());
         parser.registerObserver(productionCollector);
 
         // 加入用作语义检查的 Observer
@@ -57,6 +100,16 @@ public class Main {
         final var irGenerator = new IRGenerator();
         parser.registerObserver(irGenerator);
 
+        // // 记录分析动作, 之后可以由 ParseTraceReplayer 重放给任意 Observer, 无需再次进行词法与语法分析
+        // final var traceRecorder = new ParseTraceRecorder(FilePathConfig.PARSE_TRACE_PATH, lrTable.getBeginProduction());
+        // parser.registerObserver(traceRecorder);
+
+        // // 不注册 productionCollector 时, 可以略过其余 Observer 都不需要的单产生式规约
+        // parser.enableUnitProductionBypass();
+
+        // // 在多核机器上, 可以让各 Observer 在各自的线程中异步处理分析动作
+        // parser.enableAsyncObservers();
+
         // 执行语法解析并在解析过程中依次调用各 Observer
         parser.run();
 
@@ -66,13 +119,25 @@ public class Main {
         final var instructions = irGenerator.getIR();
         irGenerator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
 
+        // 按流水线优化 IR, 并输出优化后的 IR 与各 pass 的统计信息
+        final var passManager = PassManager.of(passNames, irGenerator.getVariablePool());
+        if (verifyIR) {
+            passManager.enableVerification();
+        }
+        final var optimized = passManager.run(instructions);
+        FileUtils.writeLines(FilePathConfig.OPTIMIZED_CODE_PATH, optimized.stream().map(Instruction::toString).toList());
+        passManager.dumpStatistics(FilePathConfig.PASS_STATISTICS_PATH);
+
+        // 以紧凑形式存放 IR, 模拟执行与汇编生成都直接遍历它, 不再访问各个 Instruction 对象
+        final var compactIR = InstructionBuffer.of(optimized, irGenerator.getVariablePool());
+
         // 模拟执行 IR 并输出结果
-        final var emulator = IREmulator.load(instructions);
+        final var emulator = IREmulator.load(compactIR);
         FileUtils.writeFile(FilePathConfig.EMULATE_RESULT, emulator.execute().map(Objects::toString).orElse("No return value"));
 
         // 由 IR 生成汇编
         final var asmGenerator = new AssemblyGenerator();
-        asmGenerator.loadIR(instructions);
+        asmGenerator.loadIR(compactIR);
         asmGenerator.run();
         asmGenerator.dump(FilePathConfig.ASSEMBLY_LANGUAGE_PATH);
     }
@@ -1,7 +1,5 @@
 package cn.edu.hitsz.compiler.asm;
 
-import cn.edu.hitsz.compiler.ir.*;
-
 import java.util.List;
 
 public class AsmCode {
@@ -25,36 +23,36 @@ public class AsmCode {
         this.text = text;
     }
 
-    public static AsmCode createAdd(String result, String lhs, String rhs, Instruction ir) {
-        return new AsmCode("add", result, lhs, rhs, ir.toString());
+    public static AsmCode createAdd(String result, String lhs, String rhs, String ir) {
+        return new AsmCode("add", result, lhs, rhs, ir);
     }
 
-    public static AsmCode createAddi(String result, String lhs, IRValue rhs, Instruction ir) {
-        return new AsmCode("addi", result, lhs, Integer.toString(((IRImmediate)rhs).getValue()), ir.toString());
+    public static AsmCode createAddi(String result, String lhs, int rhs, String ir) {
+        return new AsmCode("addi", result, lhs, Integer.toString(rhs), ir);
     }
 
-    public static AsmCode createSub(String result, String lhs, String rhs, Instruction ir) {
-        return new AsmCode("sub", result, lhs, rhs, ir.toString());
+    public static AsmCode createSub(String result, String lhs, String rhs, String ir) {
+        return new AsmCode("sub", result, lhs, rhs, ir);
     }
 
-    public static AsmCode createSubi(String result, String lhs, IRValue rhs, Instruction ir) {
-        return new AsmCode("subi", result, lhs, Integer.toString(((IRImmediate)rhs).getValue()), ir.toString());
+    public static AsmCode createSubi(String result, String lhs, int rhs, String ir) {
+        return new AsmCode("subi", result, lhs, Integer.toString(rhs), ir);
     }
 
-    public static AsmCode createMul(String result, String lhs, String rhs, Instruction ir) {
-        return new AsmCode("mul", result, lhs, rhs, ir.toString());
+    public static AsmCode createMul(String result, String lhs, String rhs, String ir) {
+        return new AsmCode("mul", result, lhs, rhs, ir);
     }
 
-    public static AsmCode createMov(String result, String lhs, Instruction ir) {
-        return new AsmCode("mv", result, lhs, null, ir.toString());
+    public static AsmCode createMov(String result, String lhs, String ir) {
+        return new AsmCode("mv", result, lhs, null, ir);
     }
 
-    public static AsmCode createRet(String lhs, Instruction ir) {
-        return new AsmCode("mv", "a0", lhs, null, ir.toString());
+    public static AsmCode createRet(String lhs, String ir) {
+        return new AsmCode("mv", "a0", lhs, null, ir);
     }
 
-    public static AsmCode createLi(String result, IRValue lhs, Instruction ir) {
-        return new AsmCode("li", result, Integer.toString(((IRImmediate)lhs).getValue()), null, ir.toString());
+    public static AsmCode createLi(String result, int lhs, String ir) {
+        return new AsmCode("li", result, Integer.toString(lhs), null, ir);
     }
 
     @Override
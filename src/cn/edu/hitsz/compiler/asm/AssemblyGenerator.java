@@ -25,17 +25,17 @@ import java.util.stream.StreamSupport;
  */
 public class AssemblyGenerator {
 
-    /** 预处理后的中间代码列表 */
-    private final List<Instruction> newInstructions = new ArrayList<>();
+    /** 预处理后的中间代码, 与前端提供的中间代码共用同一套变量编号 */
+    private InstructionBuffer newInstructions = new InstructionBuffer(new IRVariablePool());
 
-    /** 每个变量的剩余出现次数 */
-    private final Map<IRVariable, Integer> counter = new HashMap<>();
+    /** 每个变量的剩余出现次数, 下标为变量编号 */
+    private int[] counter = new int[0];
 
     /** 空闲寄存器栈 */
     private final Stack<String> freeRegs = new Stack<>();
 
-    /** 变量以及存储它的寄存器map */
-    private final Map<IRVariable, String> IRVariableToReg = new HashMap<>();
+    /** 存储各变量的寄存器, 下标为变量编号, 未分配寄存器时为 null */
+    private String[] IRVariableToReg = new String[0];
 
     /** 最后的汇编代码列表 */
     private final List<AsmCode> asmCodes = new ArrayList<>();
@@ -49,132 +49,156 @@ public class AssemblyGenerator {
      * @param originInstructions 前端提供的中间代码
      */
     public void loadIR(List<Instruction> originInstructions) {
+        loadIR(InstructionBuffer.of(originInstructions));
+    }
+
+    /**
+     * 加载紧凑存储的中间代码, 见 {@link #loadIR(List)}
+     *
+     * @param originInstructions 前端提供的中间代码
+     */
+    public void loadIR(InstructionBuffer originInstructions) {
         // TODO: 读入前端提供的中间代码并生成所需要的信息
-        for (Instruction instruction : originInstructions){
-            InstructionKind instructionKind = instruction.getKind();
+        newInstructions = originInstructions.emptyCopy();
+        final var instruction = originInstructions.cursor();
+        while (instruction.next()) {
+            InstructionKind instructionKind = instruction.kind();
             // 遇到Ret指令后直接舍弃后续指令
             if (instructionKind.isReturn()){
-                newInstructions.add(instruction);
+                newInstructions.add(InstructionKind.RET, InstructionBuffer.NONE, instruction.returnValue(), InstructionBuffer.NONE);
                 break;
             }
             // 遇到Mov指令直接添加
             if (instructionKind.isUnary()){
-                newInstructions.add(instruction);
+                newInstructions.add(InstructionKind.MOV, instruction.result(), instruction.from(), InstructionBuffer.NONE);
             }
             // 二元指令
             else if (instructionKind.isBinary()){
-                IRValue lhs = instruction.getLHS();
-                IRValue rhs = instruction.getRHS();
-                IRVariable result = instruction.getResult();
+                int lhs = instruction.lhs();
+                int rhs = instruction.rhs();
+                int result = instruction.result();
                 // 将操作两个立即数的BinaryOp直接进行求值得到结果，然后替换成MOV指令
-                if (lhs.isImmediate() && rhs.isImmediate()){
+                if (isImmediate(lhs) && isImmediate(rhs)){
+                    int lhsInt = newInstructions.immediateValue(lhs);
+                    int rhsInt = newInstructions.immediateValue(rhs);
                     int resultInt = 0;
                     switch (instructionKind) {
-                        case ADD -> resultInt = ((IRImmediate)lhs).getValue() + ((IRImmediate)rhs).getValue();
-                        case SUB -> resultInt = ((IRImmediate)lhs).getValue() - ((IRImmediate)rhs).getValue();
-                        case MUL -> resultInt = ((IRImmediate)lhs).getValue() * ((IRImmediate)rhs).getValue();
+                        case ADD -> resultInt = lhsInt + rhsInt;
+                        case SUB -> resultInt = lhsInt - rhsInt;
+                        case MUL -> resultInt = lhsInt * rhsInt;
                         default -> System.err.println("instructionKind error!");
                     }
-                    newInstructions.add(Instruction.createMov(result, IRImmediate.of(resultInt)));
+                    newInstructions.add(InstructionKind.MOV, result, newInstructions.immediate(resultInt), InstructionBuffer.NONE);
                 }
                 // 左操作数是立即数
-                else if (lhs.isImmediate()){
+                else if (isImmediate(lhs)){
                     switch (instructionKind) {
                         // 若是加法，则交换左右两操作数位置
-                        case ADD -> newInstructions.add(Instruction.createAdd(result, rhs, lhs));
+                        case ADD -> newInstructions.add(InstructionKind.ADD, result, rhs, lhs);
                         // 若是乘法，则先插入一条mov指令，将指令调整为无立即数指令
                         case MUL -> {
-                            IRVariable temp = IRVariable.temp();
-                            newInstructions.add(Instruction.createMov(temp, lhs));
-                            newInstructions.add(Instruction.createMul(result, temp, rhs));
+                            int temp = newInstructions.getVariablePool().temp().getIndex();
+                            newInstructions.add(InstructionKind.MOV, temp, lhs, InstructionBuffer.NONE);
+                            newInstructions.add(InstructionKind.MUL, result, temp, rhs);
                         }
                         // 若是减法，则先插入一条mov指令，将指令调整为无立即数指令
                         case SUB -> {
-                            newInstructions.add(Instruction.createMov(result, lhs));
-                            newInstructions.add(Instruction.createSub(result, result, rhs));
+                            newInstructions.add(InstructionKind.MOV, result, lhs, InstructionBuffer.NONE);
+                            newInstructions.add(InstructionKind.SUB, result, result, rhs);
                         }
                         default -> System.err.println("instructionKind error!");
                     }
                 }
                 // 右操作数是立即数
-                else if (rhs.isImmediate()){
+                else if (isImmediate(rhs)){
                     switch (instructionKind) {
                         // 若是加法则直接添加
-                        case ADD -> newInstructions.add(instruction);
+                        case ADD -> newInstructions.add(instructionKind, result, lhs, rhs);
                         // 若是减法同样直接添加
-                        case SUB -> newInstructions.add(instruction);
+                        case SUB -> newInstructions.add(instructionKind, result, lhs, rhs);
                         // 若是乘法，则先插入一条mov指令，将指令调整为无立即数指令
                         case MUL -> {
-                            IRVariable temp = IRVariable.temp();
-                            newInstructions.add(Instruction.createMov(temp, rhs));
-                            newInstructions.add(Instruction.createMul(result, lhs, temp));
+                            int temp = newInstructions.getVariablePool().temp().getIndex();
+                            newInstructions.add(InstructionKind.MOV, temp, rhs, InstructionBuffer.NONE);
+                            newInstructions.add(InstructionKind.MUL, result, lhs, temp);
                         }
                         default -> System.err.println("instructionKind error!");
                     }
                 }
                 else {
-                    newInstructions.add(instruction);
+                    newInstructions.add(instructionKind, result, lhs, rhs);
                 }
             }
         }
     }
 
 
+    private static boolean isImmediate(int operand) {
+        return InstructionBuffer.isImmediate(operand);
+    }
+
+
     /** 将variable的出现次数加一 */
-    private void addCounter(IRVariable variable){
-        if (!counter.containsKey(variable)) {
-            counter.put(variable, 1);
-        }
-        else{
-            counter.put(variable, counter.get(variable) + 1);
-        }
+    private void addCounter(int variable){
+        counter[variable]++;
     }
 
 
     /** 将variable的出现次数减一，若为0说明不再被使用，释放其寄存器 */
-    private void subCounter(IRVariable variable){
-        int count = counter.get(variable)-1;
+    private void subCounter(int variable){
+        int count = --counter[variable];
         if (count == 0){
-            freeRegs.push(IRVariableToReg.get(variable));
-            IRVariableToReg.remove(variable);
+            freeRegs.push(IRVariableToReg[variable]);
+            IRVariableToReg[variable] = null;
         }
-        counter.put(variable, count);
     }
 
 
-    /** 初始化变量出现次数的map */
+    /** 初始化变量出现次数的数组 */
     private void initCounter(){
-        for (Instruction instruction : newInstructions) {
-            InstructionKind instructionKind = instruction.getKind();
+        counter = new int[newInstructions.variableCount()];
+        IRVariableToReg = new String[newInstructions.variableCount()];
+        final var instruction = newInstructions.cursor();
+        while (instruction.next()) {
+            InstructionKind instructionKind = instruction.kind();
             // ret
             if (instructionKind.isReturn()){
-                IRValue returnValue = instruction.getReturnValue();
-                if (returnValue.isIRVariable()){
-                    addCounter((IRVariable)returnValue);
+                int returnValue = instruction.returnValue();
+                if (!isImmediate(returnValue)){
+                    addCounter(returnValue);
                 }
             }
             // mov
             else if (instructionKind.isUnary()){
-                IRValue from = instruction.getFrom();
-                if (from.isIRVariable()){
-                    addCounter((IRVariable)from);
+                int from = instruction.from();
+                if (!isImmediate(from)){
+                    addCounter(from);
                 }
             }
             // add sub mul
             else if (instructionKind.isBinary()){
-                IRValue lhs = instruction.getLHS();
-                IRValue rhs = instruction.getRHS();
-                if (lhs.isIRVariable()){
-                    addCounter((IRVariable)lhs);
+                int lhs = instruction.lhs();
+                int rhs = instruction.rhs();
+                if (!isImmediate(lhs)){
+                    addCounter(lhs);
                 }
-                if (rhs.isIRVariable()){
-                    addCounter((IRVariable)rhs);
+                if (!isImmediate(rhs)){
+                    addCounter(rhs);
                 }
             }
         }
     }
 
 
+    /** 若variable此后不再被使用，释放其寄存器 */
+    private void releaseIfDead(int variable){
+        if (counter[variable] <= 0 && IRVariableToReg[variable] != null){
+            freeRegs.push(IRVariableToReg[variable]);
+            IRVariableToReg[variable] = null;
+        }
+    }
+
+
     /** 初始化空闲寄存器栈 */
     private void initFreeRegs(){
         for (int i = 0; i <= 6; i++){
@@ -184,12 +208,12 @@ public class AssemblyGenerator {
 
 
     /** 返回存储指定变量的寄存器或分配一个新寄存器 */
-    private String getReg(IRVariable variable) {
-        if (IRVariableToReg.containsKey(variable)) {
-            return IRVariableToReg.get(variable);
+    private String getReg(int variable) {
+        if (IRVariableToReg[variable] != null) {
+            return IRVariableToReg[variable];
         } else {
             String reg = freeRegs.pop();
-            IRVariableToReg.put(variable, reg);
+            IRVariableToReg[variable] = reg;
             return reg;
         }
     }
@@ -211,83 +235,96 @@ public class AssemblyGenerator {
         // 初始化空闲寄存器栈
         initFreeRegs();
         asmCodes.add(new AsmCode(".text"));
-        for (Instruction instruction : newInstructions){
-            InstructionKind instructionKind = instruction.getKind();
+        final var instruction = newInstructions.cursor();
+        while (instruction.next()) {
+            InstructionKind instructionKind = instruction.kind();
+            // 汇编代码后附带的 IR 文本
+            String ir = newInstructions.toString(instruction.index());
             // ret
             if (instructionKind.isReturn()){
-                IRVariable returnValue = (IRVariable)(instruction.getReturnValue());
-                asmCodes.add(AsmCode.createRet(getReg(returnValue), instruction));
-                subCounter(returnValue);
+                int returnValue = instruction.returnValue();
+                // 返回值是立即数 (比如经过常量传播之后), 直接载入a0
+                if (isImmediate(returnValue)){
+                    asmCodes.add(AsmCode.createLi("a0", newInstructions.immediateValue(returnValue), ir));
+                }
+                else {
+                    asmCodes.add(AsmCode.createRet(getReg(returnValue), ir));
+                    subCounter(returnValue);
+                }
             }
             // mov
             else if (instructionKind.isUnary()){
-                IRVariable result = instruction.getResult();
-                IRValue from = instruction.getFrom();
+                int result = instruction.result();
+                int from = instruction.from();
                 // from是立即数，生成li指令
-                if (from.isImmediate()){
-                    asmCodes.add(AsmCode.createLi(getReg(result), from, instruction));
+                if (isImmediate(from)){
+                    asmCodes.add(AsmCode.createLi(getReg(result), newInstructions.immediateValue(from), ir));
                 }
                 // from是变量，生成mv指令
                 else {
-                    String fromReg = IRVariableToReg.get((IRVariable)from);
+                    String fromReg = IRVariableToReg[from];
                     // 先减少对from的引用，可使得若from后续不活跃，则result选择from独占的寄存器
-                    subCounter((IRVariable)from);
-                    asmCodes.add(AsmCode.createMov(getReg(result), fromReg, instruction));
+                    subCounter(from);
+                    asmCodes.add(AsmCode.createMov(getReg(result), fromReg, ir));
                 }
             }
             else {
-                IRVariable result = instruction.getResult();
-                IRValue lhs = instruction.getLHS();
-                IRValue rhs = instruction.getRHS();
+                int result = instruction.result();
+                int lhs = instruction.lhs();
+                int rhs = instruction.rhs();
                 switch (instructionKind) {
                     case ADD -> {
                         // add
-                        if (rhs.isIRVariable()){
-                            String rhsReg = IRVariableToReg.get((IRVariable)rhs);
-                            String lhsReg = IRVariableToReg.get((IRVariable)lhs);
+                        if (!isImmediate(rhs)){
+                            String rhsReg = IRVariableToReg[rhs];
+                            String lhsReg = IRVariableToReg[lhs];
                             // 先减少对两个操作数的引用，可使得若lhs后续不活跃，则result选择lhs独占的寄存器
-                            subCounter((IRVariable)rhs);
-                            subCounter((IRVariable)lhs);
-                            asmCodes.add(AsmCode.createAdd(getReg(result), lhsReg, rhsReg, instruction));
+                            subCounter(rhs);
+                            subCounter(lhs);
+                            asmCodes.add(AsmCode.createAdd(getReg(result), lhsReg, rhsReg, ir));
                         }
                         // addi
                         else {
-                            String lhsReg = IRVariableToReg.get((IRVariable)lhs);
+                            String lhsReg = IRVariableToReg[lhs];
                             // 先减少对lhs操作数的引用，可使得若lhs后续不活跃，则result选择lhs独占的寄存器
-                            subCounter((IRVariable)lhs);
-                            asmCodes.add(AsmCode.createAddi(getReg(result), lhsReg, rhs, instruction));
+                            subCounter(lhs);
+                            asmCodes.add(AsmCode.createAddi(getReg(result), lhsReg, newInstructions.immediateValue(rhs), ir));
                         }
                     }
                     case SUB -> {
                         // sub
-                        if (rhs.isIRVariable()){
-                            String rhsReg = IRVariableToReg.get((IRVariable)rhs);
-                            String lhsReg = IRVariableToReg.get((IRVariable)lhs);
+                        if (!isImmediate(rhs)){
+                            String rhsReg = IRVariableToReg[rhs];
+                            String lhsReg = IRVariableToReg[lhs];
                             // 先减少对两个操作数的引用，可使得若lhs后续不活跃，则result选择lhs独占的寄存器
-                            subCounter((IRVariable)rhs);
-                            subCounter((IRVariable)lhs);
-                            asmCodes.add(AsmCode.createSub(getReg(result), lhsReg, rhsReg, instruction));
+                            subCounter(rhs);
+                            subCounter(lhs);
+                            asmCodes.add(AsmCode.createSub(getReg(result), lhsReg, rhsReg, ir));
                         }
                         // subi
                         else {
-                            String lhsReg = IRVariableToReg.get((IRVariable)lhs);
+                            String lhsReg = IRVariableToReg[lhs];
                             // 先减少对lhs操作数的引用，可使得若lhs后续不活跃，则result选择lhs独占的寄存器
-                            subCounter((IRVariable)lhs);
-                            asmCodes.add(AsmCode.createSubi(getReg(result), lhsReg, rhs, instruction));
+                            subCounter(lhs);
+                            asmCodes.add(AsmCode.createSubi(getReg(result), lhsReg, newInstructions.immediateValue(rhs), ir));
                         }
                     }
                     case MUL -> {
                         // mul
-                        String rhsReg = IRVariableToReg.get((IRVariable)rhs);
-                        String lhsReg = IRVariableToReg.get((IRVariable)lhs);
+                        String rhsReg = IRVariableToReg[rhs];
+                        String lhsReg = IRVariableToReg[lhs];
                         // 先减少对两个操作数的引用，可使得若lhs后续不活跃，则result选择lhs独占的寄存器
-                        subCounter((IRVariable)rhs);
-                        subCounter((IRVariable)lhs);
-                        asmCodes.add(AsmCode.createMul(getReg(result), lhsReg, rhsReg, instruction));
+                        subCounter(rhs);
+                        subCounter(lhs);
+                        asmCodes.add(AsmCode.createMul(getReg(result), lhsReg, rhsReg, ir));
                     }
                     default -> System.err.println("instructionKind error!");
                 }
             }
+            // 结果此后不再被使用 (比如常量传播后只剩下赋值的变量), 立即释放其寄存器, 否则寄存器会一直被占用
+            if (!instructionKind.isReturn()){
+                releaseIfDead(instruction.result());
+            }
         }
 
     }
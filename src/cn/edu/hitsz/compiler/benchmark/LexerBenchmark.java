@@ -0,0 +1,157 @@
+package cn.edu.hitsz.compiler.benchmark;
+
+import cn.edu.hitsz.compiler.lexer.LexerDFA;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * 比较各种词法分析过程吞吐量的基准测试
+ * <br>
+ * 用法: {@code LexerBenchmark [源文件路径]}, 不给出路径时自动生成一个约 10 MB 的测试程序.
+ * 每种分析过程先预热若干轮, 再计时若干轮, 输出平均每秒处理的字节数与 token 数.
+ * <br>
+ * 计时之前先检查各分析过程在测试程序与 {@link #EQUIVALENCE_CASES} 上得到的 token 序列是否与手写的分析过程完全相同,
+ * 不同时直接报错.
+ */
+public class LexerBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    /**
+     * 各分析过程容易产生分歧的输入: 作为源文本出现的 TokenKind 标识符 (包括带别名的 Semicolon 与模式类的 IntConst),
+     * 以及含有非 ASCII 字节, 从而使快速分析过程退回原有分析过程的输入
+     */
+    private static final List<List<String>> EQUIVALENCE_CASES = List.of(
+        List.of("int Semicolon; Semicolon = 1; return Semicolon;"),
+        List.of("int IntConst; IntConst = 2; int id; id = IntConst * 3; return id;"),
+        List.of("int intx; intx = 1; int returns; returns = intx;", "return returns;"),
+        List.of("int Semicolon; Semicolon = 1; \u00e9", "return Semicolon;")
+    );
+
+    /** 参与比较的各种分析过程 */
+    private static final List<String> ENGINES = List.of("hand-written", "dfa", "ascii+hand-written", "ascii+dfa");
+
+    public static void main(String[] args) throws IOException {
+        TokenKind.loadTokenKinds();
+
+        final String path;
+        if (args.length > 0) {
+            path = args[0];
+        } else {
+            final var file = File.createTempFile("lexer-benchmark", ".txt");
+            file.deleteOnExit();
+            path = file.getPath();
+            FileUtils.writeLines(path, generateProgram(100_000));
+        }
+        final var bytes = new File(path).length();
+
+        final var dfa = LexerDFA.fromTokenKinds();
+        checkEquivalence(path, dfa);
+        for (final var cases : EQUIVALENCE_CASES) {
+            final var file = File.createTempFile("lexer-equivalence", ".txt");
+            file.deleteOnExit();
+            FileUtils.writeLines(file.getPath(), cases);
+            checkEquivalence(file.getPath(), dfa);
+        }
+
+        for (final var engine : ENGINES) {
+            run(engine, path, bytes, configure(engine, dfa));
+        }
+    }
+
+    /**
+     * @return 将分析器配置为使用指定分析过程的方法
+     */
+    private static Consumer<LexicalAnalyzer> configure(String engine, LexerDFA dfa) {
+        return lexer -> {
+            if (engine.endsWith("dfa")) {
+                lexer.useDFA(dfa);
+            }
+            if (engine.startsWith("ascii")) {
+                lexer.enableAsciiFastPath();
+            }
+        };
+    }
+
+    /**
+     * 检查各分析过程对同一文件得到的 token 序列是否相同
+     *
+     * @throws RuntimeException 有分析过程的结果与手写的分析过程不同
+     */
+    private static void checkEquivalence(String path, LexerDFA dfa) {
+        final var expected = lex(path, configure(ENGINES.get(0), dfa));
+        for (final var engine : ENGINES.subList(1, ENGINES.size())) {
+            final var actual = lex(path, configure(engine, dfa));
+            if (!actual.equals(expected)) {
+                throw new RuntimeException("Lexer %s disagrees with %s on %s:%n%s%nvs%n%s"
+                    .formatted(engine, ENGINES.get(0), path, actual, expected));
+            }
+        }
+    }
+
+    /**
+     * @return 分析文件得到的各 token 的文本
+     */
+    private static List<String> lex(String path, Consumer<LexicalAnalyzer> configure) {
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        configure.accept(lexer);
+        lexer.loadFile(path);
+        lexer.run();
+        final var result = new ArrayList<String>();
+        lexer.getTokens().forEach(token -> result.add(token.toString()));
+        return result;
+    }
+
+    /**
+     * 生成一个由声明, 赋值与返回语句构成的程序
+     *
+     * @param variables 变量个数
+     * @return 程序的各行
+     */
+    static List<String> generateProgram(int variables) {
+        final var random = new Random(42);
+        final var lines = new ArrayList<String>();
+        for (int i = 0; i < variables; i++) {
+            lines.add("int variable%d;".formatted(i));
+        }
+        lines.add("variable0 = 1;");
+        for (int i = 1; i < variables; i++) {
+            lines.add("variable%d = variable%d + %d * (variable%d - 3);"
+                .formatted(i, i - 1, random.nextInt(1000), random.nextInt(i)));
+        }
+        lines.add("return variable%d;".formatted(variables - 1));
+        return lines;
+    }
+
+    private static void run(String name, String path, long bytes, Consumer<LexicalAnalyzer> configure) {
+        long elapsed = 0;
+        int tokens = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURE_ROUNDS; round++) {
+            final var lexer = new LexicalAnalyzer(new SymbolTable());
+            configure.accept(lexer);
+            lexer.loadFile(path);
+
+            final var begin = System.nanoTime();
+            lexer.run();
+            final var end = System.nanoTime();
+
+            if (round >= WARMUP_ROUNDS) {
+                elapsed += end - begin;
+                tokens = lexer.getTokenBuffer().size();
+            }
+        }
+
+        final var seconds = elapsed / 1e9 / MEASURE_ROUNDS;
+        System.out.printf("%-20s %8.2f ms/run %8.1f MB/s %10.0f tokens/s%n",
+            name, seconds * 1e3, bytes / seconds / 1e6, tokens / seconds);
+    }
+}
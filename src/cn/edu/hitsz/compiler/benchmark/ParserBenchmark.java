@@ -0,0 +1,124 @@
+package cn.edu.hitsz.compiler.benchmark;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.GeneratedParser;
+import cn.edu.hitsz.compiler.parser.ParserGenerator;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * 比较表驱动的分析程序与生成的分析程序吞吐量的基准测试
+ * <br>
+ * 用法: {@code ParserBenchmark [源文件路径]}, 不给出路径时自动生成一个约 10 MB 的测试程序.
+ * 词法分析只做一次, token 预先存入列表, 或直接使用词法分析器的 TokenBuffer;
+ * 观察者只统计动作的次数, 因此测得的基本上是驱动程序本身的开销. 标有 "no observer" 的一项不注册观察者,
+ * 此时从 TokenBuffer 读取 token 的主循环不分配任何对象.
+ */
+public class ParserBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        TokenKind.loadTokenKinds();
+
+        final String path;
+        if (args.length > 0) {
+            path = args[0];
+        } else {
+            final var file = File.createTempFile("parser-benchmark", ".txt");
+            file.deleteOnExit();
+            path = file.getPath();
+            FileUtils.writeLines(path, LexerBenchmark.generateProgram(100_000));
+        }
+
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadFile(path);
+        lexer.run();
+        final var tokens = new ArrayList<Token>();
+        lexer.getTokens().forEach(tokens::add);
+
+        final var generator = new TableGenerator(TableGenerator.Mode.LALR);
+        generator.run();
+        final var compiled = CompiledLRTable.compile(generator.getTable());
+        final var packed = PackedLRTable.pack(compiled);
+
+        run("table", tokens, compiled, null, true);
+        run("table+buffer", lexer.getTokenBuffer(), compiled, null, true);
+        run("table+buffer, no observer", lexer.getTokenBuffer(), compiled, null, false);
+        run("packed table", tokens, packed, null, true);
+        run("generated", tokens, compiled, ParserGenerator.compile(compiled), true);
+        run("generated+packed", tokens, packed, ParserGenerator.compile(packed), true);
+    }
+
+    /** 只统计动作次数的观察者 */
+    private static class CountingObserver implements ActionObserver {
+        long actions = 0;
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            actions++;
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            actions++;
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            actions++;
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+    }
+
+    private static void run(String name, Iterable<Token> tokens, ParseTable table, GeneratedParser generated,
+                            boolean observe) {
+        long elapsed = 0;
+        long actions = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURE_ROUNDS; round++) {
+            final var observer = new CountingObserver();
+            final var parser = new SyntaxAnalyzer(new SymbolTable());
+            if (observe) {
+                parser.registerObserver(observer);
+            }
+            parser.loadTokens(tokens);
+            parser.loadLRTable(table);
+            if (generated != null) {
+                parser.loadGeneratedParser(generated);
+            }
+
+            final var begin = System.nanoTime();
+            parser.run();
+            final var end = System.nanoTime();
+
+            if (round >= WARMUP_ROUNDS) {
+                elapsed += end - begin;
+                actions = observer.actions;
+            }
+        }
+
+        final var seconds = elapsed / 1e9 / MEASURE_ROUNDS;
+        if (observe) {
+            System.out.printf("%-28s %8.2f ms/run %10.0f actions/s%n", name, seconds * 1e3, actions / seconds);
+        } else {
+            System.out.printf("%-28s %8.2f ms/run%n", name, seconds * 1e3);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package cn.edu.hitsz.compiler.benchmark;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.PackedLRTable;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.parser.table.Term;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 比较各种 LR 分析表内存占用与查表吞吐量的基准测试
+ * <br>
+ * 用法: {@code TableBenchmark [SLR|LALR|LR1]}, 默认为 LALR. 分析表由 grammar.txt 构造.
+ * 内存占用方面, LRTable 为其仍可达时 GC 之后的堆占用与构造前之差, 数组形式的分析表为各个 int 数组的大小;
+ * 吞吐量方面, 对随机的 (状态, 终结符) 查 action 表, 对随机的 (状态, 产生式的头) 查 goto 表, 输出平均每秒的查表次数.
+ * <br>
+ * 测量内存占用之后检查 grammar.txt 与 {@link #NULLABLE_GRAMMAR} 的 LALR(1) 向前看符号是否与合并规范 LR(1) 状态的结果相同,
+ * 不同时直接报错.
+ */
+public class TableBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+    private static final int LOOKUPS = 1 << 22;
+
+    /**
+     * 含有可空非终结符的文法, 以空串结尾的产生式体即为空. LALR(1) 在这类文法上需要用到 reads 与 includes 两种关系
+     */
+    private static final List<String> NULLABLE_GRAMMAR = List.of(
+        "P -> L",
+        "L -> L Stmt",
+        "L ->",
+        "Stmt -> Opt id Tail Semicolon",
+        "Opt -> int",
+        "Opt ->",
+        "Tail -> = E",
+        "Tail ->",
+        "E -> E + T",
+        "E -> T",
+        "T -> F Post",
+        "Post -> * F Post",
+        "Post ->",
+        "F -> id",
+        "F -> IntConst",
+        "F -> ( E )"
+    );
+
+    public static void main(String[] args) {
+        TokenKind.loadTokenKinds();
+        final var mode = args.length > 0 ? TableGenerator.Mode.valueOf(args[0]) : TableGenerator.Mode.LALR;
+        // 先构造一次并丢弃, 使文法, 类的加载与静态数据都不计入分析表的内存占用
+        new TableGenerator(mode).run();
+
+        final var before = retainedMemory();
+        final LRTable table;
+        {
+            final var generator = new TableGenerator(mode);
+            generator.run();
+            table = generator.getTable();
+        }
+        // 构造过程中的临时对象此时已不可达, 只有 table 仍被引用
+        final var lrTableBytes = retainedMemory() - before;
+        Reference.reachabilityFence(table);
+
+        final var compiled = CompiledLRTable.compile(table);
+        final var packed = PackedLRTable.pack(compiled);
+        System.out.printf("%s: %d states, %d distinct action rows after default reductions%n",
+            mode, compiled.getStateCount(), packed.getRowCount());
+        System.out.printf("%-12s %12d bytes%n", "LRTable", lrTableBytes);
+        System.out.printf("%-12s %12d bytes%n", "compiled", compiled.getFootprintBytes());
+        System.out.printf("%-12s %12d bytes%n", "packed", packed.getFootprintBytes());
+
+        checkLALR("grammar.txt", GrammarInfo.getProductionsInOrder());
+        checkLALR("nullable grammar", parseGrammar(NULLABLE_GRAMMAR));
+
+        // 随机的查表序列
+        final var random = new Random(42);
+        final var kinds = new ArrayList<>(TokenKind.allAllowedTokenKinds().values());
+        final var productions = GrammarInfo.getProductionsInOrder().stream()
+            .filter(production -> compiled.headOf(production.index()) >= 0).toList();
+        final var states = new int[LOOKUPS];
+        final var kindsOfLookups = new TokenKind[LOOKUPS];
+        final var codes = new int[LOOKUPS];
+        final var heads = new NonTerminal[LOOKUPS];
+        final var headColumns = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            states[i] = random.nextInt(compiled.getStateCount());
+            kindsOfLookups[i] = kinds.get(random.nextInt(kinds.size()));
+            codes[i] = kindsOfLookups[i].getCode();
+            final var production = productions.get(random.nextInt(productions.size()));
+            heads[i] = production.head();
+            headColumns[i] = compiled.headOf(production.index());
+        }
+        final var statuses = new Status[compiled.getStateCount()];
+        for (int state = 0; state < statuses.length; state++) {
+            statuses[state] = compiled.getStatus(state);
+        }
+
+        measure("LRTable", () -> {
+            long sum = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                sum += statuses[states[i]].getAction(kindsOfLookups[i]).getKind().ordinal();
+                sum += statuses[states[i]].getGoto(heads[i]).index();
+            }
+            return sum;
+        });
+        for (final var parseTable : new ParseTable[]{compiled, packed}) {
+            measure(parseTable == compiled ? "compiled" : "packed", () -> {
+                long sum = 0;
+                for (int i = 0; i < LOOKUPS; i++) {
+                    sum += CompiledLRTable.kindOf(parseTable.action(states[i], parseTable.columnOf(codes[i])));
+                    sum += parseTable.goto_(states[i], headColumns[i]);
+                }
+                return sum;
+            });
+        }
+    }
+
+    /**
+     * 检查 LALR(1) 的向前看符号与合并规范 LR(1) 中 LR(0) 项目集相同的状态得到的结果是否相同
+     *
+     * @throws RuntimeException 两者不同
+     */
+    private static void checkLALR(String name, List<Production> productions) {
+        final var lalr = new TableGenerator(TableGenerator.Mode.LALR, false, productions);
+        lalr.run();
+        final var lr1 = new TableGenerator(TableGenerator.Mode.LR1, false, productions);
+        lr1.run();
+
+        final var expected = lr1.getMergedReductions();
+        final var actual = lalr.getMergedReductions();
+        if (!actual.equals(expected)) {
+            throw new RuntimeException("LALR lookaheads of %s differ from merged LR(1):%n%s%nvs%n%s"
+                .formatted(name, actual, expected));
+        }
+        System.out.printf("%s: LALR lookaheads match merged LR(1) on %d reductions%n", name, actual.size());
+    }
+
+    /**
+     * @param lines 形如 {@code A -> B c} 的产生式, 码点文件中的标识符为终结符, 其余为非终结符
+     * @return 按顺序编号的产生式
+     */
+    private static List<Production> parseGrammar(List<String> lines) {
+        final var nonTerminals = new HashMap<String, NonTerminal>();
+        final var productions = new ArrayList<Production>();
+        for (final var line : lines) {
+            final var words = line.split("->", -1);
+            final var head = nonTerminals.computeIfAbsent(words[0].trim(), NonTerminal::new);
+            final var body = new ArrayList<Term>();
+            for (final var word : words[1].trim().split(" ")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                body.add(TokenKind.isAllowed(word) ? TokenKind.fromString(word) : nonTerminals.computeIfAbsent(word, NonTerminal::new));
+            }
+            productions.add(new Production(productions.size() + 1, head, body));
+        }
+        return productions;
+    }
+
+    /** 一轮查表, 返回值用于防止查表被优化掉 */
+    private interface Round {
+        long run();
+    }
+
+    private static void measure(String name, Round round) {
+        long elapsed = 0;
+        long checksum = 0;
+        for (int i = 0; i < WARMUP_ROUNDS + MEASURE_ROUNDS; i++) {
+            final var begin = System.nanoTime();
+            checksum += round.run();
+            final var end = System.nanoTime();
+            if (i >= WARMUP_ROUNDS) {
+                elapsed += end - begin;
+            }
+        }
+
+        final var seconds = elapsed / 1e9 / MEASURE_ROUNDS;
+        // 每轮每个下标各查一次 action 与 goto
+        System.out.printf("%-12s %8.2f ms/run %10.1f M lookups/s (checksum %d)%n",
+            name, seconds * 1e3, 2.0 * LOOKUPS / seconds / 1e6, checksum);
+    }
+
+    /**
+     * System.gc 只是一个提示, 一次调用不一定能回收所有不可达对象. 反复 GC 直到堆占用不再下降, 得到的即为仍可达对象的大小
+     */
+    private static long retainedMemory() {
+        final var runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            System.gc();
+            final var current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
@@ -7,23 +7,13 @@ package cn.edu.hitsz.compiler.ir;
  * name 来表示. 临时变量的 name 都是 "$[0-9]+", 而非临时变量的 name 都是 "[a-zA-Z_][a-zA-Z0-9_]*"
  * <br>
  * IR 变量的等价性由 name 唯一确定.
+ * <br>
+ * 对应源语言变量的 IRVariable 还可以记录该变量在符号表中的编号, 后续阶段可以用它代替 name 索引符号表.
+ * <br>
+ * IR 变量只能由 {@link IRVariablePool} 创建, 同一个池中同名的变量只有一个对象, 且各自带有一个从 0 开始连续分配的编号,
+ * 后续阶段可以直接以编号为下标, 用数组或 BitSet 存放各变量的信息.
  */
 public class IRVariable implements IRValue {
-    /**
-     * @param name 源语言中变量的名字
-     * @return 一个对应于源语言中具体变量的 IRVariable
-     */
-    public static IRVariable named(String name) {
-        return new IRVariable(name);
-    }
-
-    /**
-     * @return 一个对应于源语言中的临时变量的新 IRVariable
-     */
-    public static IRVariable temp() {
-        return new IRVariable("$" + count++);
-    }
-
     public String getName() {
         return name;
     }
@@ -36,6 +26,20 @@ public class IRVariable implements IRValue {
         return !isTemp();
     }
 
+    /**
+     * @return 该变量在符号表中的编号, 临时变量或未记录编号时为 -1
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    /**
+     * @return 该变量在创建它的 {@link IRVariablePool} 中的编号
+     */
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public String toString() {
         return name;
@@ -51,10 +55,15 @@ public class IRVariable implements IRValue {
         return name.hashCode();
     }
 
-    private IRVariable(String name) {
+    IRVariable(String name, int symbolId, int index) {
         this.name = name;
+        this.symbolId = symbolId;
+        this.index = index;
     }
 
+    static final int NO_SYMBOL = -1;
+
     private final String name;
-    private static int count = 0;
+    private final int symbolId;
+    private final int index;
 }
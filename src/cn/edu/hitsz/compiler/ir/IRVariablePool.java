@@ -0,0 +1,133 @@
+package cn.edu.hitsz.compiler.ir;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 一次编译中所有 IR 变量的池
+ * <br>
+ * 池为每个 IR 变量分配一个从 0 开始连续的编号 ({@link IRVariable#getIndex()}), 同名的变量只创建一次.
+ * 临时变量按创建顺序命名为 $0, $1, ..., 计数器属于池而不是全局的, 因此不同的编译可以同时进行, 各自的临时变量也都从 $0 开始.
+ * <br>
+ * 带有符号表编号的变量按编号直接在数组中查找, 同一个标识符的多次出现不需要再计算字符串的哈希值.
+ * <br>
+ * 该类不是线程安全的, 一次编译的 IR 生成与后续阶段应依次使用同一个池.
+ */
+public class IRVariablePool {
+    /**
+     * @return 一个新的临时变量
+     */
+    public IRVariable temp() {
+        return register(create("$" + tempCount++, IRVariable.NO_SYMBOL));
+    }
+
+    /**
+     * @param name 源语言中变量的名字
+     * @return 对应于源语言中该变量的 IRVariable
+     */
+    public IRVariable named(String name) {
+        final var existing = byName.get(name);
+        return existing != null ? existing : register(create(name, IRVariable.NO_SYMBOL));
+    }
+
+    /**
+     * @param name     源语言中变量的名字
+     * @param symbolId 该变量在符号表中的编号
+     * @return 对应于源语言中该变量, 且记录了其符号表编号的 IRVariable
+     */
+    public IRVariable named(String name, int symbolId) {
+        if (symbolId < 0) {
+            return named(name);
+        }
+        if (symbolId < bySymbol.length && bySymbol[symbolId] != null) {
+            return bySymbol[symbolId];
+        }
+
+        if (symbolId >= bySymbol.length) {
+            bySymbol = Arrays.copyOf(bySymbol, Math.max(bySymbol.length * 2, symbolId + 1));
+        }
+        final var existing = byName.get(name);
+        bySymbol[symbolId] = existing != null ? existing : register(create(name, symbolId));
+        return bySymbol[symbolId];
+    }
+
+    /**
+     * @param variable IR 变量
+     * @return 该变量在池中的编号, 池中没有同名的变量时为 -1
+     */
+    public int indexOf(IRVariable variable) {
+        if (owns(variable)) {
+            return variable.getIndex();
+        }
+        final var existing = byName.get(variable.getName());
+        return existing != null ? existing.getIndex() : -1;
+    }
+
+    /**
+     * 取得池中与 variable 同名的变量, 没有时创建一个同名, 同符号表编号的变量. 用于接收由其它池创建的变量
+     *
+     * @param variable IR 变量
+     * @return 池中与之同名的变量
+     */
+    public IRVariable intern(IRVariable variable) {
+        if (owns(variable)) {
+            return variable;
+        }
+        final var existing = byName.get(variable.getName());
+        if (existing != null) {
+            return existing;
+        }
+
+        if (variable.isTemp()) {
+            // 之后新建的临时变量不能与之重名
+            final var number = Integer.parseInt(variable.getName().substring(1));
+            tempCount = Math.max(tempCount, number + 1);
+        }
+        return register(create(variable.getName(), variable.getSymbolId()));
+    }
+
+    /**
+     * @return 编号为 index 的变量
+     */
+    public IRVariable get(int index) {
+        return variables[index];
+    }
+
+    /**
+     * @return 池中变量的个数, 所有编号都小于该值
+     */
+    public int size() {
+        return size;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private IRVariable[] variables = new IRVariable[INITIAL_CAPACITY];
+    private int size = 0;
+    private int tempCount = 0;
+    private final Map<String, IRVariable> byName = new HashMap<>();
+    /** 下标为符号表编号 */
+    private IRVariable[] bySymbol = new IRVariable[INITIAL_CAPACITY];
+
+    private boolean owns(IRVariable variable) {
+        final var index = variable.getIndex();
+        return index < size && variables[index] == variable;
+    }
+
+    private IRVariable create(String name, int symbolId) {
+        if (size == variables.length) {
+            variables = Arrays.copyOf(variables, size * 2);
+        }
+        final var variable = new IRVariable(name, symbolId, size);
+        variables[size++] = variable;
+        return variable;
+    }
+
+    private IRVariable register(IRVariable variable) {
+        byName.put(variable.getName(), variable);
+        return variable;
+    }
+}
@@ -1,6 +1,7 @@
 package cn.edu.hitsz.compiler.ir;
 
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -55,27 +56,27 @@ public class Instruction {
     }
 
     public IRVariable getResult() {
-        ensureKindMatch(Set.of(InstructionKind.ADD, InstructionKind.SUB, InstructionKind.MUL, InstructionKind.MOV));
+        ensureKindMatch(WITH_RESULT);
         return result;
     }
 
     public IRValue getLHS() {
-        ensureKindMatch(Set.of(InstructionKind.ADD, InstructionKind.SUB, InstructionKind.MUL));
+        ensureKindMatch(BINARY);
         return operands.get(0);
     }
 
     public IRValue getRHS() {
-        ensureKindMatch(Set.of(InstructionKind.ADD, InstructionKind.SUB, InstructionKind.MUL));
+        ensureKindMatch(BINARY);
         return operands.get(1);
     }
 
     public IRValue getFrom() {
-        ensureKindMatch(Set.of(InstructionKind.MOV));
+        ensureKindMatch(UNARY);
         return operands.get(0);
     }
 
     public IRValue getReturnValue() {
-        ensureKindMatch(Set.of(InstructionKind.RET));
+        ensureKindMatch(RETURN);
         return operands.get(0);
     }
 
@@ -99,6 +100,13 @@ public class Instruction {
         this.operands = operands;
     }
 
+    // 各个 getter 允许的指令种类, 预先构造好, 避免每次访问都新建一个 Set
+    private static final Set<InstructionKind> WITH_RESULT =
+        EnumSet.of(InstructionKind.ADD, InstructionKind.SUB, InstructionKind.MUL, InstructionKind.MOV);
+    private static final Set<InstructionKind> BINARY = EnumSet.of(InstructionKind.ADD, InstructionKind.SUB, InstructionKind.MUL);
+    private static final Set<InstructionKind> UNARY = EnumSet.of(InstructionKind.MOV);
+    private static final Set<InstructionKind> RETURN = EnumSet.of(InstructionKind.RET);
+
     private final InstructionKind kind;
     private final IRVariable result;
     private final List<IRValue> operands;
@@ -0,0 +1,393 @@
+package cn.edu.hitsz.compiler.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 紧凑存储的指令序列
+ * <br>
+ * 与每条指令一个 Instruction 对象, 再加一个参数 List 与若干 IRValue 对象的做法不同, 该类按列存储所有指令:
+ * 指令种类 (一个字节), 结果与两个参数. 结果与参数都以带标记的 int 表示, 称为操作数:
+ * <ul>
+ *     <li>非负的操作数为 IR 变量在 {@link IRVariablePool} 中的编号, 可以直接用作数组下标</li>
+ *     <li>负的操作数 op 表示立即数, 其值存放在立即数表的第 ~op 项中, 因此立即数可以取到 int 的全部范围</li>
+ *     <li>指令没有的结果或参数记为 {@link #NONE}</li>
+ * </ul>
+ * MOV 的 from 与 RET 的返回值存放在第一个参数 (lhs) 的位置.
+ * <br>
+ * 遍历指令时应使用 {@link #cursor()}, 它不会为每条指令分配对象. 需要 Instruction 对象的使用者可以通过
+ * {@link #getInstruction(int)} 或迭代器按需构造, 构造出的 Instruction 与原指令完全一致.
+ */
+public class InstructionBuffer implements Iterable<Instruction> {
+    /** 指令没有该操作数 */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    /**
+     * @param instructions 指令列表
+     * @return 按顺序存放了这些指令的缓冲区, 其中的变量在一个新的池中重新编号
+     */
+    public static InstructionBuffer of(List<Instruction> instructions) {
+        return of(instructions, new IRVariablePool());
+    }
+
+    /**
+     * @param instructions 指令列表
+     * @param pool         创建这些指令中的变量的池, 比如 IRGenerator 的池. 此时变量的编号即为操作数, 无需查找
+     * @return 按顺序存放了这些指令的缓冲区
+     */
+    public static InstructionBuffer of(List<Instruction> instructions, IRVariablePool pool) {
+        final var buffer = new InstructionBuffer(pool);
+        buffer.ensureCapacity(instructions.size());
+        for (final var instruction : instructions) {
+            buffer.add(instruction);
+        }
+        return buffer;
+    }
+
+    /**
+     * @param pool 缓冲区中的变量所属的池
+     */
+    public InstructionBuffer(IRVariablePool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return 一个没有指令, 但与该缓冲区使用同一个变量池与立即数表的新缓冲区, 该缓冲区中的操作数可以直接加入新缓冲区
+     */
+    public InstructionBuffer emptyCopy() {
+        final var copy = new InstructionBuffer(pool);
+        copy.immediates = Arrays.copyOf(immediates, immediates.length);
+        copy.immediateCount = immediateCount;
+        return copy;
+    }
+
+    /**
+     * 在末尾追加一条指令
+     *
+     * @param instruction 指令
+     */
+    public void add(Instruction instruction) {
+        final var kind = instruction.getKind();
+        final var operands = instruction.getOperands();
+        switch (kind) {
+            case ADD, SUB, MUL -> add(kind, variable(instruction.getResult()), operand(operands.get(0)), operand(operands.get(1)));
+            case MOV -> add(kind, variable(instruction.getResult()), operand(operands.get(0)), NONE);
+            case RET -> add(kind, NONE, operand(operands.get(0)), NONE);
+            default -> throw new RuntimeException("Unknown instruction kind: " + kind);
+        }
+    }
+
+    /**
+     * 在末尾追加一条指令
+     *
+     * @param kind   指令种类
+     * @param result 结果变量的操作数, 没有时为 {@link #NONE}
+     * @param lhs    第一个参数的操作数, 没有时为 {@link #NONE}
+     * @param rhs    第二个参数的操作数, 没有时为 {@link #NONE}
+     */
+    public void add(InstructionKind kind, int result, int lhs, int rhs) {
+        ensureCapacity(size + 1);
+        kinds[size] = (byte) kind.ordinal();
+        results[size] = result;
+        lhss[size] = lhs;
+        rhss[size] = rhs;
+        size++;
+    }
+
+    /**
+     * @param variable IR 变量
+     * @return 该变量的操作数. 变量不属于该缓冲区的池时, 先将其加入池中
+     */
+    public int variable(IRVariable variable) {
+        return pool.intern(variable).getIndex();
+    }
+
+    /**
+     * @param variable IR 变量
+     * @return 该变量的编号, 池中没有该变量时为 -1
+     */
+    public int findVariable(IRVariable variable) {
+        return pool.indexOf(variable);
+    }
+
+    /**
+     * @param value 立即数的值
+     * @return 表示该立即数的操作数
+     */
+    public int immediate(int value) {
+        if (immediateCount == immediates.length) {
+            immediates = Arrays.copyOf(immediates, Math.max(INITIAL_CAPACITY, immediateCount * 2));
+        }
+        immediates[immediateCount] = value;
+        return ~immediateCount++;
+    }
+
+    /**
+     * @param value IR 变量或立即数
+     * @return 对应的操作数
+     */
+    public int operand(IRValue value) {
+        if (value instanceof IRImmediate immediate) {
+            return immediate(immediate.getValue());
+        } else if (value instanceof IRVariable variable) {
+            return variable(variable);
+        } else {
+            throw new RuntimeException("Unknown IR value type");
+        }
+    }
+
+    /**
+     * @return 操作数是否表示立即数
+     */
+    public static boolean isImmediate(int operand) {
+        return operand < 0 && operand != NONE;
+    }
+
+    /**
+     * @return 操作数是否表示 IR 变量, 此时操作数即为变量的编号
+     */
+    public static boolean isVariable(int operand) {
+        return operand >= 0;
+    }
+
+    /**
+     * @return 立即数操作数的值
+     */
+    public int immediateValue(int operand) {
+        return immediates[~operand];
+    }
+
+    /**
+     * @return 编号为 id 的 IR 变量
+     */
+    public IRVariable getVariable(int id) {
+        return pool.get(id);
+    }
+
+    /**
+     * @return 池中的 IR 变量数, 变量的编号均小于该值
+     */
+    public int variableCount() {
+        return pool.size();
+    }
+
+    /**
+     * @return 缓冲区中的变量所属的池, 可以用它创建新的临时变量
+     */
+    public IRVariablePool getVariablePool() {
+        return pool;
+    }
+
+    /**
+     * @param operand 操作数
+     * @return 对应的 IR 变量或立即数
+     */
+    public IRValue valueOf(int operand) {
+        return isImmediate(operand) ? IRImmediate.of(immediateValue(operand)) : getVariable(operand);
+    }
+
+    /**
+     * @return 指令数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 第 index 条指令的种类
+     */
+    public InstructionKind getKind(int index) {
+        return KINDS[kinds[index]];
+    }
+
+    /**
+     * @return 第 index 条指令的结果的操作数
+     */
+    public int getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * @return 第 index 条指令的第一个参数的操作数
+     */
+    public int getLHS(int index) {
+        return lhss[index];
+    }
+
+    /**
+     * @return 第 index 条指令的第二个参数的操作数
+     */
+    public int getRHS(int index) {
+        return rhss[index];
+    }
+
+    /**
+     * 按需构造第 index 条指令对应的 Instruction 对象
+     *
+     * @param index 下标
+     * @return 构造出的指令
+     */
+    public Instruction getInstruction(int index) {
+        final var result = results[index];
+        final var lhs = valueOf(lhss[index]);
+        return switch (getKind(index)) {
+            case ADD -> Instruction.createAdd(getVariable(result), lhs, valueOf(rhss[index]));
+            case SUB -> Instruction.createSub(getVariable(result), lhs, valueOf(rhss[index]));
+            case MUL -> Instruction.createMul(getVariable(result), lhs, valueOf(rhss[index]));
+            case MOV -> Instruction.createMov(getVariable(result), lhs);
+            case RET -> Instruction.createRet(lhs);
+        };
+    }
+
+    /**
+     * @return 所有指令构造出的列表
+     */
+    public List<Instruction> toList() {
+        final var list = new ArrayList<Instruction>(size);
+        for (final var instruction : this) {
+            list.add(instruction);
+        }
+        return list;
+    }
+
+    /**
+     * @return 第 index 条指令的文本, 与对应的 {@link Instruction#toString()} 相同
+     */
+    public String toString(int index) {
+        final var builder = new StringBuilder().append('(').append(getKind(index)).append(", ");
+        if (results[index] != NONE) {
+            builder.append(getVariable(results[index]));
+        }
+        builder.append(", ");
+        appendOperand(builder, lhss[index]);
+        if (rhss[index] != NONE) {
+            builder.append(", ");
+            appendOperand(builder, rhss[index]);
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * @return 依次按需构造每条 Instruction 的迭代器
+     */
+    @Override
+    public Iterator<Instruction> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Instruction next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return getInstruction(index++);
+            }
+        };
+    }
+
+    /**
+     * @return 从第一条指令开始的游标
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 依次访问各条指令的游标. 游标本身是唯一分配的对象, 访问各个字段只是数组读取
+     * <br>
+     * 用法:
+     * <pre>
+     * final var cursor = buffer.cursor();
+     * while (cursor.next()) {
+     *     switch (cursor.kind()) { ... }
+     * }
+     * </pre>
+     * 各个 getter 不检查指令种类, 对没有该操作数的指令返回 {@link #NONE}.
+     */
+    public final class Cursor {
+        private int index = -1;
+
+        /**
+         * 移动到下一条指令
+         *
+         * @return 是否还有指令
+         */
+        public boolean next() {
+            return ++index < size;
+        }
+
+        /**
+         * @return 当前指令的下标
+         */
+        public int index() {
+            return index;
+        }
+
+        public InstructionKind kind() {
+            return KINDS[kinds[index]];
+        }
+
+        public int result() {
+            return results[index];
+        }
+
+        public int lhs() {
+            return lhss[index];
+        }
+
+        public int rhs() {
+            return rhss[index];
+        }
+
+        public int from() {
+            return lhss[index];
+        }
+
+        public int returnValue() {
+            return lhss[index];
+        }
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final InstructionKind[] KINDS = InstructionKind.values();
+
+    private void ensureCapacity(int required) {
+        if (required > kinds.length) {
+            final var capacity = Math.max(Math.max(INITIAL_CAPACITY, kinds.length * 2), required);
+            kinds = Arrays.copyOf(kinds, capacity);
+            results = Arrays.copyOf(results, capacity);
+            lhss = Arrays.copyOf(lhss, capacity);
+            rhss = Arrays.copyOf(rhss, capacity);
+        }
+    }
+
+    private void appendOperand(StringBuilder builder, int operand) {
+        if (isImmediate(operand)) {
+            builder.append(immediateValue(operand));
+        } else {
+            builder.append(getVariable(operand));
+        }
+    }
+
+    private byte[] kinds = new byte[0];
+    private int[] results = new int[0];
+    private int[] lhss = new int[0];
+    private int[] rhss = new int[0];
+    private int size = 0;
+
+    private final IRVariablePool pool;
+
+    /** 立即数表 */
+    private int[] immediates = new int[0];
+    private int immediateCount = 0;
+}
@@ -0,0 +1,119 @@
+package cn.edu.hitsz.compiler.ir.pass;
+
+import cn.edu.hitsz.compiler.ir.IRImmediate;
+import cn.edu.hitsz.compiler.ir.IRValue;
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariablePool;
+import cn.edu.hitsz.compiler.ir.Instruction;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 常量传播与常量折叠
+ * <br>
+ * 目前的 IR 只有顺序执行的指令, 没有分支, 因此每个变量在每个位置至多有一个到达的定值, 一遍前向扫描即可得到精确的结果:
+ * 扫描时按变量编号记录每个变量当前是否为已知的常量及其值.
+ * <ul>
+ *     <li>参数中值已知的变量替换为立即数</li>
+ *     <li>两个参数都是立即数的 ADD/SUB/MUL 折叠为 MOV 立即数, 按 int 溢出回绕, 与模拟执行的结果一致</li>
+ *     <li>x + 0, 0 + x, x - 0, x * 1, 1 * x 化为 MOV x; x * 0, 0 * x 化为 MOV 0</li>
+ * </ul>
+ * 对变量的赋值即使已不再需要也会保留, 交由死代码消除删去.
+ */
+public class ConstantPropagationPass implements IRPass {
+    public static final String NAME = "constprop";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Instruction> run(List<Instruction> instructions, IRVariablePool pool) {
+        final var values = new int[pool.size()];
+        final var known = new BitSet(pool.size());
+        final var result = new ArrayList<Instruction>(instructions.size());
+
+        for (final var instruction : instructions) {
+            switch (instruction.getKind()) {
+                case MOV -> {
+                    final var from = substitute(instruction.getFrom(), values, known);
+                    result.add(assign(instruction.getResult(), from, values, known));
+                }
+                case ADD, SUB, MUL -> {
+                    final var target = instruction.getResult();
+                    final var lhs = substitute(instruction.getLHS(), values, known);
+                    final var rhs = substitute(instruction.getRHS(), values, known);
+                    final var simplified = simplify(instruction, lhs, rhs);
+                    if (simplified != null) {
+                        result.add(assign(target, simplified, values, known));
+                    } else {
+                        known.clear(target.getIndex());
+                        result.add(switch (instruction.getKind()) {
+                            case ADD -> Instruction.createAdd(target, lhs, rhs);
+                            case SUB -> Instruction.createSub(target, lhs, rhs);
+                            default -> Instruction.createMul(target, lhs, rhs);
+                        });
+                    }
+                }
+                case RET -> result.add(Instruction.createRet(substitute(instruction.getReturnValue(), values, known)));
+                default -> throw new RuntimeException("Unknown instruction kind: " + instruction.getKind());
+            }
+        }
+        return result;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    /**
+     * @return 值已知的变量替换为立即数, 其余原样返回
+     */
+    private static IRValue substitute(IRValue value, int[] values, BitSet known) {
+        if (value instanceof IRVariable variable && known.get(variable.getIndex())) {
+            return IRImmediate.of(values[variable.getIndex()]);
+        }
+        return value;
+    }
+
+    /**
+     * 生成 MOV target, from 并记录 target 的值
+     */
+    private static Instruction assign(IRVariable target, IRValue from, int[] values, BitSet known) {
+        if (from instanceof IRImmediate immediate) {
+            values[target.getIndex()] = immediate.getValue();
+            known.set(target.getIndex());
+        } else {
+            known.clear(target.getIndex());
+        }
+        return Instruction.createMov(target, from);
+    }
+
+    /**
+     * @return 二元运算化简后等价的单个值, 不能化简时为 null
+     */
+    private static IRValue simplify(Instruction instruction, IRValue lhs, IRValue rhs) {
+        if (lhs instanceof IRImmediate left && rhs instanceof IRImmediate right) {
+            return IRImmediate.of(switch (instruction.getKind()) {
+                case ADD -> left.getValue() + right.getValue();
+                case SUB -> left.getValue() - right.getValue();
+                default -> left.getValue() * right.getValue();
+            });
+        }
+
+        return switch (instruction.getKind()) {
+            case ADD -> isConstant(rhs, 0) ? lhs : isConstant(lhs, 0) ? rhs : null;
+            case SUB -> isConstant(rhs, 0) ? lhs : null;
+            case MUL -> isConstant(rhs, 1) ? lhs
+                : isConstant(lhs, 1) ? rhs
+                : isConstant(lhs, 0) || isConstant(rhs, 0) ? IRImmediate.of(0)
+                : null;
+            default -> null;
+        };
+    }
+
+    private static boolean isConstant(IRValue value, int constant) {
+        return value instanceof IRImmediate immediate && immediate.getValue() == constant;
+    }
+}
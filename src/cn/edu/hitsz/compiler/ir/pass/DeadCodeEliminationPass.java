@@ -0,0 +1,64 @@
+package cn.edu.hitsz.compiler.ir.pass;
+
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariablePool;
+import cn.edu.hitsz.compiler.ir.Instruction;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 基于活跃变量分析的死代码与死存储消除
+ * <br>
+ * 程序唯一可观察的结果是 RET 的返回值, 而 IR 中的指令除了给结果变量赋值之外没有其它副作用, 因此:
+ * <ul>
+ *     <li>第一条 RET 之后的指令不会被执行, 全部删去</li>
+ *     <li>从 RET 开始逆序扫描, 维护以变量编号为下标的活跃变量集合. 赋值给不活跃变量的指令 (包括临时变量与源语言中的变量)
+ *     不会影响返回值, 删去; 其余指令的结果变量在其之前不再活跃, 参数中的变量变为活跃</li>
+ * </ul>
+ * IR 只有顺序执行的指令, 一遍逆序扫描即可得到精确的活跃信息. 没有 RET 的程序没有可观察的结果, 所有指令都会被删去.
+ */
+public class DeadCodeEliminationPass implements IRPass {
+    public static final String NAME = "dce";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Instruction> run(List<Instruction> instructions, IRVariablePool pool) {
+        // 第一条 RET 之后的指令不可达
+        int end = 0;
+        while (end < instructions.size() && !instructions.get(end).getKind().isReturn()) {
+            end++;
+        }
+        if (end == instructions.size()) {
+            return List.of();
+        }
+
+        final var live = new BitSet(pool.size());
+        final var kept = new ArrayList<Instruction>();
+        for (int index = end; index >= 0; index--) {
+            final var instruction = instructions.get(index);
+            if (!instruction.getKind().isReturn()) {
+                final var result = instruction.getResult().getIndex();
+                if (!live.get(result)) {
+                    continue;
+                }
+                live.clear(result);
+            }
+            for (final var operand : instruction.getOperands()) {
+                if (operand instanceof IRVariable variable) {
+                    live.set(variable.getIndex());
+                }
+            }
+            kept.add(instruction);
+        }
+
+        Collections.reverse(kept);
+        return kept;
+    }
+}
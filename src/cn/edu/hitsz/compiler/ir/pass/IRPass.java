@@ -0,0 +1,30 @@
+package cn.edu.hitsz.compiler.ir.pass;
+
+import cn.edu.hitsz.compiler.ir.IRVariablePool;
+import cn.edu.hitsz.compiler.ir.Instruction;
+
+import java.util.List;
+
+/**
+ * IR 上的一个优化或变换过程
+ * <br>
+ * pass 接受一段指令序列并返回变换后的指令序列, 不应修改传入的列表. 新建的临时变量应当从给出的变量池中创建,
+ * 以免与已有的变量重名.
+ *
+ * @see PassManager
+ */
+public interface IRPass {
+    /**
+     * @return pass 的名字, 用于在流水线中指定该 pass 以及输出统计信息
+     */
+    String getName();
+
+    /**
+     * 对指令序列执行变换
+     *
+     * @param instructions 指令序列
+     * @param pool         指令中的变量所属的池
+     * @return 变换后的指令序列
+     */
+    List<Instruction> run(List<Instruction> instructions, IRVariablePool pool);
+}
@@ -0,0 +1,76 @@
+package cn.edu.hitsz.compiler.ir.pass;
+
+import cn.edu.hitsz.compiler.ir.IRImmediate;
+import cn.edu.hitsz.compiler.ir.IRValue;
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariablePool;
+import cn.edu.hitsz.compiler.ir.Instruction;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 检查 IR 是否合法, 供 {@link PassManager} 在各 pass 之间调用
+ * <br>
+ * 检查的内容:
+ * <ul>
+ *     <li>除 RET 外的指令都有结果变量, 所有参数都是 IR 变量或立即数</li>
+ *     <li>所有变量都属于给出的变量池</li>
+ *     <li>临时变量至多被赋值一次, 且在使用之前已被赋值. 源语言中的变量不受此限制</li>
+ * </ul>
+ */
+public final class IRVerifier {
+    /**
+     * @param instructions 指令序列
+     * @param pool         指令中的变量所属的池
+     * @throws RuntimeException IR 不合法
+     */
+    public static void verify(List<Instruction> instructions, IRVariablePool pool) {
+        final var definedTemps = new BitSet(pool.size());
+        for (int index = 0; index < instructions.size(); index++) {
+            final var instruction = instructions.get(index);
+            if (instruction == null) {
+                throw error(index, null, "null instruction");
+            }
+            for (final var operand : instruction.getOperands()) {
+                checkValue(index, instruction, operand, pool);
+                if (operand instanceof IRVariable variable && variable.isTemp() && !definedTemps.get(variable.getIndex())) {
+                    throw error(index, instruction, "temp %s is used before assigned".formatted(variable));
+                }
+            }
+            if (!instruction.getKind().isReturn()) {
+                final var result = instruction.getResult();
+                if (result == null) {
+                    throw error(index, instruction, "missing result");
+                }
+                checkValue(index, instruction, result, pool);
+                if (result.isTemp()) {
+                    if (definedTemps.get(result.getIndex())) {
+                        throw error(index, instruction, "temp %s is assigned twice".formatted(result));
+                    }
+                    definedTemps.set(result.getIndex());
+                }
+            }
+        }
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static void checkValue(int index, Instruction instruction, IRValue value, IRVariablePool pool) {
+        if (value instanceof IRVariable variable) {
+            final var id = variable.getIndex();
+            if (id < 0 || id >= pool.size() || pool.get(id) != variable) {
+                throw error(index, instruction, "variable %s does not belong to the pool".formatted(variable));
+            }
+        } else if (!(value instanceof IRImmediate)) {
+            throw error(index, instruction, "illegal operand " + value);
+        }
+    }
+
+    private static RuntimeException error(int index, Instruction instruction, String message) {
+        return new RuntimeException("Illegal IR at %d %s: %s".formatted(index, instruction, message));
+    }
+
+    private IRVerifier() {
+    }
+}
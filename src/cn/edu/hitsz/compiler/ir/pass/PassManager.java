@@ -0,0 +1,159 @@
+package cn.edu.hitsz.compiler.ir.pass;
+
+import cn.edu.hitsz.compiler.ir.IRVariablePool;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 依次运行一条 IR pass 流水线, 并记录每个 pass 的统计信息
+ * <br>
+ * 每个 pass 记录运行时间, 运行前后的指令数, 以及运行期间分配的字节数 (见 {@link PassStatistics}),
+ * 用于权衡编译时间与生成代码的质量. 打开检查后, 在第一个 pass 之前与每个 pass 之后都会用 {@link IRVerifier} 检查 IR,
+ * 出错时指出是哪个 pass 产生了非法的 IR; 检查的时间不计入 pass 的运行时间.
+ * <br>
+ * 流水线可以按名字构造, 见 {@link #of(List, IRVariablePool)} 与 {@link #availablePasses()}.
+ */
+public class PassManager {
+    /** 默认的流水线 */
+    public static final List<String> DEFAULT_PIPELINE = List.of(ConstantPropagationPass.NAME, DeadCodeEliminationPass.NAME);
+
+    /**
+     * @return 可以在流水线中按名字指定的所有 pass
+     */
+    public static Set<String> availablePasses() {
+        return Collections.unmodifiableSet(REGISTRY.keySet());
+    }
+
+    /**
+     * 按名字构造流水线
+     *
+     * @param names pass 的名字, 按运行顺序排列
+     * @param pool  IR 中的变量所属的池
+     * @return 包含这些 pass 的 PassManager
+     * @throws RuntimeException 有不存在的 pass
+     */
+    public static PassManager of(List<String> names, IRVariablePool pool) {
+        final var manager = new PassManager(pool);
+        for (final var name : names) {
+            final var factory = REGISTRY.get(name);
+            if (factory == null) {
+                throw new RuntimeException("Unknown IR pass %s, available: %s".formatted(name, availablePasses()));
+            }
+            manager.add(factory.get());
+        }
+        return manager;
+    }
+
+    /**
+     * @param pool IR 中的变量所属的池
+     */
+    public PassManager(IRVariablePool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 在流水线末尾加入一个 pass
+     *
+     * @param pass pass
+     * @return this
+     */
+    public PassManager add(IRPass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    /**
+     * 在各 pass 之间检查 IR
+     */
+    public void enableVerification() {
+        this.verify = true;
+    }
+
+    /**
+     * 依次运行流水线中的各个 pass
+     *
+     * @param instructions 指令序列
+     * @return 所有 pass 运行之后的指令序列
+     */
+    public List<Instruction> run(List<Instruction> instructions) {
+        if (verify) {
+            verify(instructions, "input");
+        }
+
+        var current = instructions;
+        for (final var pass : passes) {
+            final var allocatedBefore = allocatedBytes();
+            final var begin = System.nanoTime();
+            final var result = pass.run(current, pool);
+            final var nanos = System.nanoTime() - begin;
+            final var allocatedAfter = allocatedBytes();
+
+            statistics.add(new PassStatistics(pass.getName(), current.size(), result.size(), nanos,
+                allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore));
+            if (verify) {
+                verify(result, pass.getName());
+            }
+            current = result;
+        }
+        return current;
+    }
+
+    /**
+     * @return 各 pass 每次运行的统计信息, 按运行顺序排列
+     */
+    public List<PassStatistics> getStatistics() {
+        return Collections.unmodifiableList(statistics);
+    }
+
+    /**
+     * 将统计信息输出到文件
+     *
+     * @param path 文件路径
+     */
+    public void dumpStatistics(String path) {
+        FileUtils.writeLines(path, statistics.stream().map(PassStatistics::toString).toList());
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    /** 按名字构造 pass 的方法, 新的 pass 需要在这里登记 */
+    private static final Map<String, Supplier<IRPass>> REGISTRY = new LinkedHashMap<>();
+
+    static {
+        REGISTRY.put(ConstantPropagationPass.NAME, ConstantPropagationPass::new);
+        REGISTRY.put(DeadCodeEliminationPass.NAME, DeadCodeEliminationPass::new);
+    }
+
+    private final IRVariablePool pool;
+    private final List<IRPass> passes = new ArrayList<>();
+    private final List<PassStatistics> statistics = new ArrayList<>();
+    private boolean verify = false;
+
+    private void verify(List<Instruction> instructions, String after) {
+        try {
+            IRVerifier.verify(instructions, pool);
+        } catch (RuntimeException e) {
+            throw new RuntimeException("IR verification failed after " + after, e);
+        }
+    }
+
+    /**
+     * @return 当前线程已分配的字节数, 不支持时为 -1
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+            && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,18 @@
+package cn.edu.hitsz.compiler.ir.pass;
+
+/**
+ * 一个 pass 的一次运行的统计信息
+ *
+ * @param name               pass 的名字
+ * @param instructionsBefore 运行前的指令数
+ * @param instructionsAfter  运行后的指令数
+ * @param nanos              运行所用的时间 (纳秒), 不含 IR 检查
+ * @param allocatedBytes     运行期间当前线程分配的字节数, JVM 不支持统计时为 -1
+ */
+public record PassStatistics(String name, int instructionsBefore, int instructionsAfter, long nanos, long allocatedBytes) {
+    @Override
+    public String toString() {
+        return "%-12s %10d -> %10d %12.3f ms %14d B".formatted(
+            name, instructionsBefore, instructionsAfter, nanos / 1e6, allocatedBytes);
+    }
+}
@@ -0,0 +1,80 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * 快速分析过程所用的关键字表, 直接以缓冲区中的字节判断一个标识符是否为关键字
+ * <br>
+ * 关键字按 (长度, 首字节) 分桶, 查找时先由标识符的长度与首字节定位到桶, 再逐字节比较桶中的少数几个关键字.
+ * 大多数标识符所在的桶都是空的, 一次数组访问即可确定不是关键字, 整个过程不构造任何字符串.
+ */
+final class AsciiKeywords {
+    /**
+     * @param keywords 只由 ASCII 字母组成的关键字及其类型
+     */
+    AsciiKeywords(Map<String, TokenKind> keywords) {
+        final var entries = keywords.entrySet().stream()
+            .sorted(Comparator.comparingInt((Map.Entry<String, TokenKind> entry) -> bucketOf(entry.getKey()))
+                .thenComparing(Map.Entry::getKey))
+            .toList();
+        maxLength = keywords.keySet().stream().mapToInt(String::length).max().orElse(0);
+        lexemes = new byte[entries.size()][];
+        kinds = new TokenKind[entries.size()];
+        bucketStart = new int[(maxLength + 1) * 128 + 1];
+
+        for (int i = 0; i < entries.size(); i++) {
+            lexemes[i] = entries.get(i).getKey().getBytes(StandardCharsets.US_ASCII);
+            kinds[i] = entries.get(i).getValue();
+            bucketStart[bucketOf(entries.get(i).getKey()) + 1]++;
+        }
+        for (int bucket = 1; bucket < bucketStart.length; bucket++) {
+            bucketStart[bucket] += bucketStart[bucket - 1];
+        }
+    }
+
+    /**
+     * @param buffer 源文件缓冲区, 须为纯 ASCII
+     * @param begin  标识符的起始位置
+     * @param end    标识符的结束位置 (不含), 须大于 begin
+     * @return 缓冲区中 [begin, end) 范围内的关键字的类型, 不是关键字时为 null
+     */
+    TokenKind match(ByteBuffer buffer, int begin, int end) {
+        final var length = end - begin;
+        if (length > maxLength) {
+            return null;
+        }
+        final var bucket = length * 128 + buffer.get(begin);
+        for (int i = bucketStart[bucket]; i < bucketStart[bucket + 1]; i++) {
+            if (equalsFrom(lexemes[i], buffer, begin)) {
+                return kinds[i];
+            }
+        }
+        return null;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private final int maxLength;
+    /** 按桶排列的各关键字的字节与类型 */
+    private final byte[][] lexemes;
+    private final TokenKind[] kinds;
+    /** 第 b 个桶中的关键字在 lexemes 中的范围为 [bucketStart[b], bucketStart[b + 1]) */
+    private final int[] bucketStart;
+
+    private static int bucketOf(String keyword) {
+        return keyword.length() * 128 + keyword.charAt(0);
+    }
+
+    /** 首字节已由桶保证相同, 从第二个字节开始比较 */
+    private static boolean equalsFrom(byte[] lexeme, ByteBuffer buffer, int begin) {
+        for (int i = 1; i < lexeme.length; i++) {
+            if (lexeme[i] != buffer.get(begin + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 按字节处理纯 ASCII 源文件的扫描工具
+ * <br>
+ * 这里使用 SWAR (SIMD Within A Register) 技巧: 一次从缓冲区中读出 8 个字节放进一个 long, 用几次加法与位运算同时判断这 8
+ * 个字节是否属于某一字符类, 从而一次跳过 8 个空白字符, 或一次扫过 8 个标识符/数字字符, 而不用逐个字符分类.
+ * <br>
+ * 所有判断都依赖每个字节的最高位为 0 (即纯 ASCII), 这样每个字节加上不超过 0x80 的数时不会向相邻字节进位.
+ * 因此在使用前必须先用 {@link #isPureAscii(ByteBuffer)} 检查整个缓冲区.
+ * <br>
+ * 读取 long 时需使用小端序视图 ({@link #littleEndianView(ByteBuffer)}), 这样低地址的字节位于 long 的低位,
+ * 第一个不满足条件的字节可以直接用 {@link Long#numberOfTrailingZeros(long)} 找出.
+ */
+final class AsciiScanner {
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long CASE_BITS = 0x2020202020202020L;
+
+    /**
+     * @param buffer 缓冲区
+     * @return 缓冲区中是否只包含 ASCII 字符
+     */
+    static boolean isPureAscii(ByteBuffer buffer) {
+        final var view = littleEndianView(buffer);
+        final var limit = view.limit();
+        long bits = 0;
+        int i = 0;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            bits |= view.getLong(i);
+        }
+        for (; i < limit; i++) {
+            bits |= view.get(i);
+        }
+        return (bits & HIGH_BITS) == 0;
+    }
+
+    /**
+     * @return 与 buffer 共享内容, 以小端序读取多字节数据的视图
+     */
+    static ByteBuffer littleEndianView(ByteBuffer buffer) {
+        return buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 跳过从 pos 开始的所有不大于空格 (0x20) 的字符.
+     * <br>
+     * 这包括了所有 ASCII 空白字符, 以及其余的控制字符. 后者不属于任何词素, 在词法分析中本来就会被直接跳过, 所以一并跳过不影响结果.
+     *
+     * @return 第一个大于空格的字符的位置, 或 limit
+     */
+    static int skipBlank(ByteBuffer view, int pos, int limit) {
+        while (pos + Long.BYTES <= limit) {
+            // 对于 0x00 ~ 0x7F 的字节 b, b + 0x5F 的最高位为 1 当且仅当 b >= 0x21
+            final var nonBlank = (view.getLong(pos) + repeat(0x5F)) & HIGH_BITS;
+            if (nonBlank != 0) {
+                return pos + firstLane(nonBlank);
+            }
+            pos += Long.BYTES;
+        }
+        while (pos < limit && view.get(pos) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * 跳过从 pos 开始的所有字母与数字
+     *
+     * @return 第一个非字母数字字符的位置, 或 limit
+     */
+    static int skipAlNum(ByteBuffer view, int pos, int limit) {
+        while (pos + Long.BYTES <= limit) {
+            final var word = view.getLong(pos);
+            final var other = ~(digitLanes(word) | letterLanes(word)) & HIGH_BITS;
+            if (other != 0) {
+                return pos + firstLane(other);
+            }
+            pos += Long.BYTES;
+        }
+        while (pos < limit && isAlNum(view.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * 跳过从 pos 开始的所有数字
+     *
+     * @return 第一个非数字字符的位置, 或 limit
+     */
+    static int skipDigits(ByteBuffer view, int pos, int limit) {
+        while (pos + Long.BYTES <= limit) {
+            final var other = ~digitLanes(view.getLong(pos)) & HIGH_BITS;
+            if (other != 0) {
+                return pos + firstLane(other);
+            }
+            pos += Long.BYTES;
+        }
+        while (pos < limit && isDigit(view.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    static boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    static boolean isAlpha(int ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    static boolean isAlNum(int ch) {
+        return isDigit(ch) || isAlpha(ch);
+    }
+
+    /**
+     * @return 各字节是否为数字, 结果在每个字节的最高位
+     */
+    private static long digitLanes(long word) {
+        return inRange(word, '0', '9');
+    }
+
+    /**
+     * @return 各字节是否为字母, 结果在每个字节的最高位. 大写字母置上 0x20 后即为对应的小写字母
+     */
+    private static long letterLanes(long word) {
+        return inRange(word | CASE_BITS, 'a', 'z');
+    }
+
+    /**
+     * 同时判断 8 个 ASCII 字节是否位于 [low, high] 中
+     * <br>
+     * b + (0x80 - low) 的最高位为 1 当且仅当 b >= low; b + (0x7F - high) 的最高位为 1 当且仅当 b > high
+     */
+    private static long inRange(long word, int low, int high) {
+        final var notBelow = word + repeat(0x80 - low);
+        final var above = word + repeat(0x7F - high);
+        return notBelow & ~above & HIGH_BITS;
+    }
+
+    private static long repeat(int b) {
+        return ONES * b;
+    }
+
+    /**
+     * @return 最低的最高位被置上的字节的序号
+     */
+    private static int firstLane(long mask) {
+        return Long.numberOfTrailingZeros(mask) >>> 3;
+    }
+
+    private AsciiScanner() {
+    }
+}
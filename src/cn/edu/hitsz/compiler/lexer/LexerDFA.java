@@ -0,0 +1,424 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * 由码点文件中的 TokenKind 构造出的词法分析自动机 (最小化 DFA)
+ * <br>
+ * 码点文件中的 TokenKind 分为两类:
+ * <ul>
+ *     <li>模式类: id 与 IntConst, 分别对应 {@code [a-zA-Z][a-zA-Z0-9]*} 与 {@code [0-9]+}</li>
+ *     <li>字面量类: 其余所有 TokenKind, 其词素就是其标识符本身 (如 int, return, +), 少数无法直接书写的标识符
+ *     (如 Semicolon) 通过别名表另外给出一个词素. 与手写的分析过程一致, 这类 TokenKind 的标识符本身作为源文本出现时也是该
+ *     TokenKind, 因此 {@code ;} 与 {@code Semicolon} 都被识别为 Semicolon</li>
+ * </ul>
+ * 关键字也是字面量, 它们和 id 的模式一起被编入同一个自动机, 并且在接受时优先于 id. 这样在词法分析的热循环中就不再需要
+ * 为每个标识符截取字符串并查表判断其是否为关键字了. 码点文件中新增的字面量 TokenKind 无需修改代码即可被识别.
+ * <br>
+ * 为了压缩转移表, ASCII 字符先被映射到字符类: 每个在字面量中出现过的字符单独成为一类, 其余字母, 其余数字各自成为一类,
+ * 剩下的字符 (包括空白与非 ASCII 字节) 都属于第 0 类, 在任何状态下都没有转移.
+ * <br>
+ * 自动机的构造过程为: 先构造无 epsilon 边的 NFA, 再经子集构造得到 DFA, 最后按接受的 TokenKind 划分初始等价类, 用 Moore
+ * 算法将其最小化.
+ */
+public final class LexerDFA {
+    /** 无转移时的目标状态 */
+    public static final int DEAD = -1;
+
+    /** 模式类 TokenKind 的标识符 */
+    private static final String IDENTIFIER = "id";
+    private static final String INT_CONST = "IntConst";
+
+    /** 标识符与词素不同的字面量 TokenKind */
+    private static final Map<String, String> LEXEME_ALIASES = Map.of("Semicolon", ";");
+
+    /**
+     * 从已读取的码点文件构造自动机
+     *
+     * @return 构造出的自动机
+     */
+    public static LexerDFA fromTokenKinds() {
+        return build(TokenKind.allAllowedTokenKinds().values());
+    }
+
+    /**
+     * 求出字面量类 TokenKind 的全部词素, 自动机与 ASCII 快速分析过程的关键字表都由它得到
+     *
+     * @param kinds TokenKind 集合
+     * @return 从词素到 TokenKind 的映射, 按词素排序, 不含 EOF 与模式类 TokenKind
+     */
+    public static SortedMap<String, TokenKind> literalsOf(Collection<TokenKind> kinds) {
+        final var literals = new TreeMap<String, TokenKind>();
+        for (final var kind : kinds) {
+            final var id = kind.getIdentifier();
+            if (kind == TokenKind.eof() || IDENTIFIER.equals(id) || INT_CONST.equals(id)) {
+                continue;
+            }
+            literals.put(id, kind);
+            final var alias = LEXEME_ALIASES.get(id);
+            if (alias != null) {
+                literals.put(alias, kind);
+            }
+        }
+        return literals;
+    }
+
+    /**
+     * 从给定的 TokenKind 集合构造自动机, EOF 会被忽略
+     *
+     * @param kinds TokenKind 集合
+     * @return 构造出的自动机
+     */
+    public static LexerDFA build(Collection<TokenKind> kinds) {
+        // 字面量按词素排序, 保证构造出的状态编号与 HashMap 的遍历顺序无关
+        final var literals = literalsOf(kinds);
+        TokenKind identifier = null;
+        TokenKind intConst = null;
+        for (final var kind : kinds) {
+            if (IDENTIFIER.equals(kind.getIdentifier())) {
+                identifier = kind;
+            } else if (INT_CONST.equals(kind.getIdentifier())) {
+                intConst = kind;
+            }
+        }
+
+        final var charClass = computeCharClasses(literals.keySet());
+        final var classCount = Arrays.stream(charClass).max().orElse(0) + 1;
+        final var nfa = new Nfa(classCount);
+
+        // 字面量: 从起始状态出发的一条链
+        for (final var entry : literals.entrySet()) {
+            int state = Nfa.START;
+            for (final var ch : entry.getKey().toCharArray()) {
+                if (ch >= ASCII_SIZE) {
+                    throw new RuntimeException("Non-ASCII lexeme in coding map: " + entry.getKey());
+                }
+                final var next = nfa.newState();
+                nfa.addEdge(state, charClass[ch], next);
+                state = next;
+            }
+            nfa.setAccept(state, entry.getValue(), LITERAL_PRIORITY);
+        }
+
+        final var letterClasses = classesOf(charClass, LexerDFA::isLetter);
+        final var digitClasses = classesOf(charClass, LexerDFA::isDigit);
+
+        // id: 字母开头, 后接任意字母与数字
+        if (identifier != null) {
+            final var state = nfa.newState();
+            nfa.setAccept(state, identifier, PATTERN_PRIORITY);
+            letterClasses.forEach(cls -> nfa.addEdge(Nfa.START, cls, state));
+            letterClasses.forEach(cls -> nfa.addEdge(state, cls, state));
+            digitClasses.forEach(cls -> nfa.addEdge(state, cls, state));
+        }
+
+        // IntConst: 一个或多个数字
+        if (intConst != null) {
+            final var state = nfa.newState();
+            nfa.setAccept(state, intConst, PATTERN_PRIORITY);
+            digitClasses.forEach(cls -> nfa.addEdge(Nfa.START, cls, state));
+            digitClasses.forEach(cls -> nfa.addEdge(state, cls, state));
+        }
+
+        final var dfa = minimize(determinize(nfa), charClass);
+        dfa.identifierKind = identifier;
+        dfa.intConstKind = intConst;
+        return dfa;
+    }
+
+    /**
+     * @param state 当前状态
+     * @param ch    输入字节 (按无符号解释)
+     * @return 转移到的状态, 无转移时为 {@link #DEAD}
+     */
+    public int next(int state, int ch) {
+        return transitions[state][ch < ASCII_SIZE ? charClass[ch] : 0];
+    }
+
+    /**
+     * @return 起始状态
+     */
+    public int getStartState() {
+        return startState;
+    }
+
+    /**
+     * @param state 状态
+     * @return 该状态接受的 TokenKind, 非接受状态为 null
+     */
+    public TokenKind getAccept(int state) {
+        return accepts[state];
+    }
+
+    /**
+     * @return 标识符的 TokenKind, 其词素需要加入符号表
+     */
+    public TokenKind getIdentifierKind() {
+        return identifierKind;
+    }
+
+    /**
+     * @return 整数常量的 TokenKind
+     */
+    public TokenKind getIntConstKind() {
+        return intConstKind;
+    }
+
+    /**
+     * @return 状态数
+     */
+    public int getStateCount() {
+        return transitions.length;
+    }
+
+    /**
+     * @return 字符类数
+     */
+    public int getClassCount() {
+        return transitions.length == 0 ? 0 : transitions[0].length;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static final int ASCII_SIZE = 128;
+    private static final int LITERAL_PRIORITY = 0;
+    private static final int PATTERN_PRIORITY = 1;
+
+    private static boolean isLetter(int ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z');
+    }
+
+    private static boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * 计算 ASCII 字符到字符类的映射
+     *
+     * @param lexemes 所有字面量的词素
+     * @return 下标为字符, 值为字符类的数组
+     */
+    private static int[] computeCharClasses(Collection<String> lexemes) {
+        final var charClass = new int[ASCII_SIZE];
+        int count = 1;
+
+        // 字面量中出现的字符各自成为一类
+        final var used = new TreeSet<Character>();
+        lexemes.forEach(lexeme -> lexeme.chars().forEach(ch -> used.add((char) ch)));
+        for (final var ch : used) {
+            if (ch < ASCII_SIZE) {
+                charClass[ch] = count++;
+            }
+        }
+
+        // 其余的字母与数字各自合并为一类
+        final var otherLetter = count++;
+        final var otherDigit = count;
+        for (int ch = 0; ch < ASCII_SIZE; ch++) {
+            if (charClass[ch] == 0) {
+                if (isLetter(ch)) {
+                    charClass[ch] = otherLetter;
+                } else if (isDigit(ch)) {
+                    charClass[ch] = otherDigit;
+                }
+            }
+        }
+        return charClass;
+    }
+
+    /**
+     * @return 包含满足条件的字符的所有字符类
+     */
+    private static Set<Integer> classesOf(int[] charClass, IntPredicate predicate) {
+        final var result = new TreeSet<Integer>();
+        for (int ch = 0; ch < ASCII_SIZE; ch++) {
+            if (predicate.test(ch)) {
+                result.add(charClass[ch]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 无 epsilon 边的 NFA, 状态 0 为起始状态
+     */
+    private static final class Nfa {
+        static final int START = 0;
+
+        final int classCount;
+        final List<List<Set<Integer>>> edges = new ArrayList<>();
+        final List<TokenKind> accepts = new ArrayList<>();
+        final List<Integer> priorities = new ArrayList<>();
+
+        Nfa(int classCount) {
+            this.classCount = classCount;
+            newState();
+        }
+
+        int newState() {
+            final var row = new ArrayList<Set<Integer>>(classCount);
+            for (int cls = 0; cls < classCount; cls++) {
+                row.add(new TreeSet<>());
+            }
+            edges.add(row);
+            accepts.add(null);
+            priorities.add(Integer.MAX_VALUE);
+            return edges.size() - 1;
+        }
+
+        void addEdge(int from, int cls, int to) {
+            edges.get(from).get(cls).add(to);
+        }
+
+        void setAccept(int state, TokenKind kind, int priority) {
+            accepts.set(state, kind);
+            priorities.set(state, priority);
+        }
+    }
+
+    /**
+     * 子集构造
+     *
+     * @return 未最小化的 DFA, 其起始状态为 0
+     */
+    private static Dfa determinize(Nfa nfa) {
+        final var dfa = new Dfa();
+        final var indexOf = new HashMap<Set<Integer>, Integer>();
+        final var unexpanded = new ArrayDeque<Set<Integer>>();
+
+        final Set<Integer> startSet = new TreeSet<>(Set.of(Nfa.START));
+        indexOf.put(startSet, dfa.newState(acceptOf(nfa, startSet), nfa.classCount));
+        unexpanded.add(startSet);
+
+        while (!unexpanded.isEmpty()) {
+            final var current = unexpanded.pollFirst();
+            final int from = indexOf.get(current);
+            for (int cls = 0; cls < nfa.classCount; cls++) {
+                final var target = new TreeSet<Integer>();
+                for (final var state : current) {
+                    target.addAll(nfa.edges.get(state).get(cls));
+                }
+                if (target.isEmpty()) {
+                    continue;
+                }
+
+                Integer to = indexOf.get(target);
+                if (to == null) {
+                    to = dfa.newState(acceptOf(nfa, target), nfa.classCount);
+                    indexOf.put(target, to);
+                    unexpanded.addLast(target);
+                }
+                dfa.transitions.get(from)[cls] = to;
+            }
+        }
+        return dfa;
+    }
+
+    /**
+     * @return NFA 状态集合中优先级最高的接受 TokenKind
+     */
+    private static TokenKind acceptOf(Nfa nfa, Set<Integer> states) {
+        TokenKind result = null;
+        int best = Integer.MAX_VALUE;
+        for (final var state : states) {
+            if (nfa.priorities.get(state) < best) {
+                best = nfa.priorities.get(state);
+                result = nfa.accepts.get(state);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 构造中的 DFA
+     */
+    private static final class Dfa {
+        final List<int[]> transitions = new ArrayList<>();
+        final List<TokenKind> accepts = new ArrayList<>();
+
+        int newState(TokenKind accept, int classCount) {
+            final var row = new int[classCount];
+            Arrays.fill(row, DEAD);
+            transitions.add(row);
+            accepts.add(accept);
+            return transitions.size() - 1;
+        }
+    }
+
+    /**
+     * Moore 算法最小化 DFA
+     *
+     * @return 最小化后的自动机
+     */
+    private static LexerDFA minimize(Dfa dfa, int[] charClass) {
+        final var stateCount = dfa.transitions.size();
+        final var classCount = stateCount == 0 ? 0 : dfa.transitions.get(0).length;
+
+        // 初始划分: 按接受的 TokenKind 划分
+        var block = new int[stateCount];
+        final var initial = new HashMap<Optional<TokenKind>, Integer>();
+        for (int state = 0; state < stateCount; state++) {
+            final var accept = Optional.ofNullable(dfa.accepts.get(state));
+            block[state] = initial.computeIfAbsent(accept, key -> initial.size());
+        }
+
+        // 反复按 (所在块, 各字符类转移到的块) 细分, 直到块数不再增加
+        int blockCount = initial.size();
+        while (true) {
+            final var signatures = new HashMap<List<Integer>, Integer>();
+            final var refined = new int[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                final var signature = new ArrayList<Integer>(classCount + 1);
+                signature.add(block[state]);
+                for (final var to : dfa.transitions.get(state)) {
+                    signature.add(to == DEAD ? DEAD : block[to]);
+                }
+                refined[state] = signatures.computeIfAbsent(signature, key -> signatures.size());
+            }
+
+            block = refined;
+            if (signatures.size() == blockCount) {
+                break;
+            }
+            blockCount = signatures.size();
+        }
+
+        // 以块为新状态构造最小 DFA, 并让起始状态所在块编号为 0
+        final var renumber = new int[blockCount];
+        Arrays.fill(renumber, -1);
+        int next = 0;
+        for (int state = 0; state < stateCount; state++) {
+            if (renumber[block[state]] == -1) {
+                renumber[block[state]] = next++;
+            }
+        }
+
+        final var transitions = new int[blockCount][classCount];
+        final var accepts = new TokenKind[blockCount];
+        for (int state = 0; state < stateCount; state++) {
+            final var to = renumber[block[state]];
+            accepts[to] = dfa.accepts.get(state);
+            for (int cls = 0; cls < classCount; cls++) {
+                final var target = dfa.transitions.get(state)[cls];
+                transitions[to][cls] = target == DEAD ? DEAD : renumber[block[target]];
+            }
+        }
+
+        return new LexerDFA(charClass, transitions, accepts, renumber[block[0]]);
+    }
+
+    private LexerDFA(int[] charClass, int[][] transitions, TokenKind[] accepts, int startState) {
+        this.charClass = charClass;
+        this.transitions = transitions;
+        this.accepts = accepts;
+        this.startState = startState;
+    }
+
+    private final int[] charClass;
+    private final int[][] transitions;
+    private final TokenKind[] accepts;
+    private final int startState;
+    private TokenKind identifierKind;
+    private TokenKind intConstKind;
+}
@@ -4,10 +4,17 @@ import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
-import java.io.*;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.StreamSupport;
 
 /**
@@ -20,122 +27,517 @@ import java.util.stream.StreamSupport;
  */
 public class LexicalAnalyzer {
     private final SymbolTable symbolTable;
-    private String input = "";
-    private final List<Token> tokens = new ArrayList<>(); // 保存词法单元的列表
+    /** 源文件内容的缓冲区 */
+    private ByteBuffer input = ByteBuffer.allocate(0);
+    /** 缓冲区中下一个待扫描字符的位置 */
+    private int position = 0;
+    /** 缓冲区中待扫描范围的末尾 (不含) */
+    private int limit = 0;
+    /** 表驱动的词法分析自动机, 为 null 时使用手写的分析过程 */
+    private LexerDFA dfa = null;
+    /** 是否对纯 ASCII 的输入启用快速分析过程 */
+    private boolean asciiFastPath = false;
+    /** 快速分析过程所用的小端序视图, 快速分析过程未启用或输入中含有非 ASCII 字符时为 null */
+    private ByteBuffer asciiView = null;
+    /** 快速分析过程所用的全由字母组成的关键字 */
+    private AsciiKeywords keywords = new AsciiKeywords(Map.of());
+    /** 保存词法单元的紧凑缓冲区 */
+    private TokenBuffer tokens = null;
+
+    /** 需要特殊处理的两种 TokenKind */
+    private final TokenKind identifierKind;
+    private final TokenKind intConstKind;
+
+    /** 最近一次扫描出的词素的类型与其在缓冲区中的范围 [scannedBegin, scannedEnd) */
+    private TokenKind scannedKind;
+    private int scannedBegin;
+    private int scannedEnd;
+    /** 最近一次扫描出的标识符在符号表中的编号 */
+    private int scannedSymbol;
 
     public LexicalAnalyzer(SymbolTable symbolTable) {
         this.symbolTable = symbolTable;
+        this.identifierKind = TokenKind.fromString("id");
+        this.intConstKind = TokenKind.fromString("IntConst");
+    }
+
+    /**
+     * 构造只分析缓冲区中 [begin, end) 范围的分块分析器, 用于并行分析
+     * <br>
+     * 分块分析器总是使用自己的符号表, 由主分析器在合并结果时按块的顺序加入主符号表, 并将各 token 中的符号编号换成主符号表中的编号.
+     * 即使主符号表是线程安全的也不让各块直接插入, 否则符号的编号会取决于各线程的执行先后
+     */
+    private LexicalAnalyzer(LexicalAnalyzer parent, int begin, int end) {
+        this.symbolTable = new SymbolTable();
+        this.identifierKind = parent.identifierKind;
+        this.intConstKind = parent.intConstKind;
+        this.input = parent.input;
+        this.dfa = parent.dfa;
+        this.asciiView = parent.asciiView == null ? null : AsciiScanner.littleEndianView(parent.input);
+        this.keywords = parent.keywords;
+        this.position = begin;
+        this.limit = end;
     }
 
 
     /**
      * 从给予的路径中读取并加载文件内容
+     * <br>
+     * 整个文件只读入一次, 放在单个缓冲区中, 词法分析直接在该缓冲区上进行, 不再逐行拼接字符串
      *
      * @param path 路径
      */
     public void loadFile(String path) {
-        // TODO: 词法分析前的缓冲区实现
-        // 可自由实现各类缓冲区
-        // 或直接采用完整读入方法
         try {
-            FileInputStream fileInputStream = new FileInputStream(path);
-            InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream, StandardCharsets.UTF_8);
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                input = input.concat(line + " ");
-            }
-            fileInputStream.close();
-            inputStreamReader.close();
-            bufferedReader.close();
-//            System.out.println("LoadFile successfully");
+            input = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+            limit = input.limit();
+            prepareAsciiView();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
+    /**
+     * 以内存映射的方式加载文件内容, 适用于较大的源文件
+     * <br>
+     * 映射在通道关闭后依然有效, 文件内容由操作系统按需换入, 不会在堆上留下任何拷贝
+     *
+     * @param path 路径
+     */
+    public void loadFileMapped(String path) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            limit = input.limit();
+            prepareAsciiView();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new RuntimeException("IO Exception on " + path, e);
         }
-//        System.out.print(input);
+    }
+
+    /**
+     * 使用表驱动的自动机进行词法分析, 而不是手写的分析过程
+     *
+     * @param dfa 由码点文件构造出的自动机
+     * @see LexerDFA#fromTokenKinds()
+     */
+    public void useDFA(LexerDFA dfa) {
+        this.dfa = dfa;
+    }
+
+    /**
+     * 对纯 ASCII 的输入启用按字节批量扫描的快速分析过程
+     * <br>
+     * 加载文件时会先检查整个文件是否只含 ASCII 字符, 否则仍然使用原有的分析过程.
+     * 关键字表取自 {@link LexerDFA#literalsOf(Collection)} 中只由字母组成的词素, 与自动机使用同一张字面量表,
+     * 因此快速分析过程与自动机对关键字 (包括 Semicolon 这类带别名的 TokenKind 的标识符) 的判断总是一致的.
+     * 快速分析过程假设所有以字母开头的字面量都只由字母组成.
+     */
+    public void enableAsciiFastPath() {
+        asciiFastPath = true;
+        final var alphaLiterals = new HashMap<String, TokenKind>();
+        LexerDFA.literalsOf(TokenKind.allAllowedTokenKinds().values()).forEach((lexeme, kind) -> {
+            if (lexeme.chars().allMatch(AsciiScanner::isAlpha)) {
+                alphaLiterals.put(lexeme, kind);
+            }
+        });
+        keywords = new AsciiKeywords(alphaLiterals);
+        prepareAsciiView();
+    }
+
+    /** 根据输入内容决定是否使用快速分析过程 */
+    private void prepareAsciiView() {
+        asciiView = asciiFastPath && AsciiScanner.isPureAscii(input) ? AsciiScanner.littleEndianView(input) : null;
     }
 
     /**
      * 执行词法分析, 准备好用于返回的 token 列表 <br>
      * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
+     * <br>
+     * 分析结果以紧凑的形式保存在 {@link TokenBuffer} 中, 不会为每个词素构造 Token 对象.
+     * 标识符 token 的整数值为其在符号表中的编号
      */
     public void run() {
-        // TODO: 自动机实现的词法分析过程
-        char ch;
-        String token;
-        char[] codes = input.toCharArray();
-        int len = codes.length;
-        int i = 0;
-        int begin;
-        while (i < len) {
-            ch = codes[i];
-            while (Character.isWhitespace(ch) && (i + 1 < len)) {
-                ch = codes[++i];
+        tokens = new TokenBuffer(input);
+        scanAll(tokens);
+        tokens.add(TokenKind.eof().getCode(), limit, limit, 0);
+    }
+
+    /**
+     * 并行执行词法分析, 结果与 run 完全相同
+     * <br>
+     * 源语言由一列以分号结尾的语句构成, 且分号不会出现在任何其它词素内部, 因此可以在分号之后安全地切分缓冲区.
+     * 各块分别在线程池中分析, 各自使用独立的符号表, 随后在主线程中按原顺序拼接, 并按标识符首次出现的顺序并入主符号表.
+     * 因此 token 中的符号编号与符号表最终的内容都与串行分析的结果完全一致, 与线程的调度无关.
+     *
+     * @param pool 执行分析任务的线程池
+     */
+    public void runParallel(ForkJoinPool pool) {
+        final var bounds = splitAtSemicolons(pool.getParallelism());
+        if (bounds.size() <= 2) {
+            run();
+            return;
+        }
+
+        final var tasks = new ArrayList<ForkJoinTask<LexicalAnalyzer>>();
+        for (int i = 0; i + 1 < bounds.size(); i++) {
+            final var chunk = new LexicalAnalyzer(this, bounds.get(i), bounds.get(i + 1));
+            tasks.add(pool.submit(() -> {
+                chunk.tokens = new TokenBuffer(input);
+                chunk.scanAll(chunk.tokens);
+                return chunk;
+            }));
+        }
+
+        tokens = new TokenBuffer(input);
+        for (final var task : tasks) {
+            final var chunk = task.join();
+            renumberSymbols(chunk);
+            tokens.addAll(chunk.tokens);
+        }
+        tokens.add(TokenKind.eof().getCode(), limit, limit, 0);
+    }
+
+    /**
+     * 将缓冲区切分为大致等长的若干块, 每块 (除最后一块外) 都恰好结束于一个分号之后
+     *
+     * @param parts 期望的块数
+     * @return 各块的边界, 首元素为 0, 末元素为缓冲区末尾
+     */
+    private List<Integer> splitAtSemicolons(int parts) {
+        final var bounds = new ArrayList<Integer>();
+        bounds.add(0);
+        final var chunkSize = Math.max(MIN_PARALLEL_CHUNK, limit / Math.max(parts, 1));
+        int cut = chunkSize;
+        while (cut < limit) {
+            while (cut < limit && input.get(cut - 1) != ';') {
+                cut++;
             }
-            begin = i;
-            // 当前字符为关键字或标识符的开始
-            if (isAlpha(ch) && (i + 1 < len)) {
-                while (isAlNum(ch) && (i + 1 < len)) {
-                    ch = codes[++i];
-                }
-                --i;
-                String cur = input.substring(begin, i + 1);
-                // 当前字符串为关键字
-                if (TokenKind.isAllowed(cur)) {
-                    tokens.add(Token.simple(cur));
-                }
-                // 当前字符串为标识符
-                else {
-                    tokens.add(Token.normal("id", cur));
-                    // 若符号表中还没有该标识符则需要加入
-                    if (!symbolTable.has(cur)) {
-                        symbolTable.add(cur);
+            if (cut < limit) {
+                bounds.add(cut);
+            }
+            cut += chunkSize;
+        }
+        bounds.add(limit);
+        return bounds;
+    }
+
+    /**
+     * 将分块分析器的符号表按编号顺序 (即标识符首次出现的顺序) 并入主符号表, 并将其 token 中的符号编号换成主符号表中的编号
+     */
+    private void renumberSymbols(LexicalAnalyzer chunk) {
+        final var local = chunk.symbolTable;
+        final var globalIds = new int[local.size()];
+        for (int id = 0; id < globalIds.length; id++) {
+            globalIds[id] = symbolTable.getOrAdd(local.get(id).getText()).getId();
+        }
+
+        final var buffer = chunk.tokens;
+        final var code = identifierKind.getCode();
+        for (int i = 0; i < buffer.size(); i++) {
+            if (buffer.getCode(i) == code) {
+                buffer.setValue(i, globalIds[buffer.getValue(i)]);
+            }
+        }
+    }
+
+    /** 并行分析时每块的最小字节数, 过小的块得不偿失 */
+    private static final int MIN_PARALLEL_CHUNK = 64 * 1024;
+
+    /** 扫描当前范围内的全部词素并追加到 buffer 中 */
+    private void scanAll(TokenBuffer buffer) {
+        while (scan()) {
+            final int value;
+            if (scannedKind == identifierKind) {
+                value = scannedSymbol;
+            } else if (scannedKind == intConstKind) {
+                value = parseIntConst(scannedBegin, scannedEnd);
+            } else {
+                value = 0;
+            }
+            buffer.add(scannedKind.getCode(), scannedBegin, scannedEnd, value);
+        }
+    }
+
+    /**
+     * 获得按需分析的 token 流
+     * <br>
+     * 与 run + getTokens 不同, 该方法不会预先分析整个文件, 只有在使用者读取下一个 token 时才会从缓冲区中扫描出该 token,
+     * 因此不需要在内存中保存完整的 token 列表. 标识符同样会在被扫描到时加入符号表, 所以符号表要等到 token 流被读取完毕后才完整.
+     *
+     * @param dumpPath 若不为 null, 则在读取 token 的同时将其依次写入该文件, 其内容与 dumpTokens 的输出相同.
+     *                 未读到 EOF 就停止读取时, 需要关闭 token 流才能写出已读取的 token
+     * @return 只能被遍历一次的 token 流, 以 EOF 结尾
+     */
+    public TokenStream lazyTokens(String dumpPath) {
+        return new TokenStream() {
+            private BufferedWriter writer = null;
+
+            @Override
+            public Iterator<Token> iterator() {
+                writer = openTee(dumpPath);
+                return new Iterator<>() {
+                    private boolean finished = false;
+
+                    @Override
+                    public boolean hasNext() {
+                        return !finished;
                     }
+
+                    @Override
+                    public Token next() {
+                        if (finished) {
+                            throw new NoSuchElementException();
+                        }
+
+                        final var token = nextToken();
+                        finished = token.getKind() == TokenKind.eof();
+                        tee(writer, token);
+                        if (finished) {
+                            close();
+                        }
+                        return token;
+                    }
+                };
+            }
+
+            @Override
+            public void close() {
+                if (writer == null) {
+                    return;
+                }
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("IO Exception when dumping tokens", e);
+                } finally {
+                    writer = null;
                 }
             }
+        };
+    }
+
+    /**
+     * 从当前位置开始扫描出下一个 token
+     *
+     * @return 扫描出的 token, 到达缓冲区末尾时返回 EOF
+     */
+    private Token nextToken() {
+        if (!scan()) {
+            return Token.eof();
+        }
+
+        if (scannedKind == identifierKind) {
+            return Token.normal(scannedKind, symbolTable.get(scannedSymbol).getText(), scannedSymbol);
+        } else if (scannedKind == intConstKind) {
+            return Token.normal(scannedKind, textOf(scannedBegin, scannedEnd), parseIntConst(scannedBegin, scannedEnd));
+        } else {
+            return Token.simple(scannedKind);
+        }
+    }
+
+    /**
+     * 从当前位置开始扫描出下一个词素, 结果保存在 scannedKind, scannedBegin, scannedEnd 中.
+     * 扫描出标识符时会顺便将其加入符号表, 其编号保存在 scannedSymbol 中.
+     *
+     * @return 是否扫描出了词素, 到达缓冲区末尾时返回 false
+     */
+    private boolean scan() {
+        final boolean found = asciiView != null ? scanAscii() : dfa != null ? scanByDFA() : scanByHand();
+        if (found && scannedKind == identifierKind) {
+            // 若符号表中还没有该标识符则需要加入; 符号表直接比较缓冲区中的字节, 已有的标识符不必再构造文本
+            scannedSymbol = symbolTable.intern(input, scannedBegin, scannedEnd);
+        }
+        return found;
+    }
+
+    /**
+     * 手写的分析过程
+     */
+    private boolean scanByHand() {
+        // 源语言只包含 ASCII 字符, 因此直接按字节扫描缓冲区, 无需先解码成 char[]
+        final int len = limit;
+        while (position < len) {
+            char ch = charAt(position);
+            // 跳过空白字符
+            if (Character.isWhitespace(ch)) {
+                position++;
+                continue;
+            }
+
+            final int begin = position;
+            // 当前字符为关键字或标识符的开始
+            if (isAlpha(ch)) {
+                do {
+                    position++;
+                } while (position < len && isAlNum(charAt(position)));
+                String cur = textOf(begin, position);
+                // 当前字符串为关键字, 否则为标识符
+                // 注意 IntConst 虽然是合法的 TokenKind 标识符, 但作为源文本出现时只是一个普通的标识符
+                final var keyword = TokenKind.isAllowed(cur) ? TokenKind.fromString(cur) : identifierKind;
+                final var kind = keyword == intConstKind ? identifierKind : keyword;
+                return scanned(kind, begin, position);
+            }
+
             // 当前字符为数字的开始
-            else if (isDigit(ch)) {
-                while (isDigit(ch) && (i + 1 < len)) {
-                    ch = codes[++i];
+            if (isDigit(ch)) {
+                do {
+                    position++;
+                } while (position < len && isDigit(charAt(position)));
+                return scanned(intConstKind, begin, position);
+            }
+
+            // 其余为单个字符构成的 token, 不认识的字符直接跳过
+            position++;
+            final var kind = switch (ch) {
+                case '=' -> "=";
+                case ',' -> ",";
+                case ';' -> "Semicolon";
+                case '+' -> "+";
+                case '-' -> "-";
+                case '*' -> "*";
+                case '/' -> "/";
+                case '(' -> "(";
+                case ')' -> ")";
+                default -> null;
+            };
+            if (kind != null) {
+                return scanned(TokenKind.fromString(kind), begin, position);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 使用自动机进行的分析过程, 按最长匹配原则确定词素
+     */
+    private boolean scanByDFA() {
+        final int len = limit;
+        while (position < len) {
+            // 跳过空白字符
+            if (Character.isWhitespace(charAt(position))) {
+                position++;
+                continue;
+            }
+
+            // 沿自动机前进, 记录最后一次经过的接受状态
+            final int begin = position;
+            int state = dfa.getStartState();
+            TokenKind accepted = null;
+            int acceptedEnd = begin;
+            for (int i = begin; i < len; i++) {
+                state = dfa.next(state, input.get(i) & 0xff);
+                if (state == LexerDFA.DEAD) {
+                    break;
                 }
-                --i;
-                String cur = input.substring(begin, i + 1);
-                tokens.add(Token.normal("IntConst", cur));
-            } else {
-                switch (ch) {
-                    case '=':
-                        tokens.add(Token.simple("="));
-                        break;
-                    case ',':
-                        tokens.add(Token.simple(","));
-                        break;
-                    case ';':
-                        tokens.add(Token.simple("Semicolon"));
-                        break;
-                    case '+':
-                        tokens.add(Token.simple("+"));
-                        break;
-                    case '-':
-                        tokens.add(Token.simple("-"));
-                        break;
-                    case '*':
-                        tokens.add(Token.simple("*"));
-                        break;
-                    case '/':
-                        tokens.add(Token.simple("/"));
-                        break;
-                    case '(':
-                        tokens.add(Token.simple("("));
-                        break;
-                    case ')':
-                        tokens.add(Token.simple(")"));
-                        break;
-                    default:
+                final var accept = dfa.getAccept(state);
+                if (accept != null) {
+                    accepted = accept;
+                    acceptedEnd = i + 1;
                 }
             }
-            i++;
+
+            // 不认识的字符直接跳过
+            if (accepted == null) {
+                position++;
+                continue;
+            }
+
+            position = acceptedEnd;
+            return scanned(accepted, begin, acceptedEnd);
+        }
+        return false;
+    }
+
+    /**
+     * 纯 ASCII 输入的快速分析过程
+     * <br>
+     * 空白, 标识符与数字这几种最常见的连续字符由 {@link AsciiScanner} 每次处理 8 个字节; 标识符是否为关键字由 {@link AsciiKeywords}
+     * 直接比较缓冲区中的字节判断, 不构造其文本.
+     * 其余的符号交给原有的分析过程处理.
+     */
+    private boolean scanAscii() {
+        final int len = limit;
+        position = AsciiScanner.skipBlank(asciiView, position, len);
+        if (position >= len) {
+            return false;
+        }
+
+        final int begin = position;
+        final int ch = asciiView.get(begin);
+        if (AsciiScanner.isAlpha(ch)) {
+            position = AsciiScanner.skipAlNum(asciiView, begin, len);
+            final var keyword = keywords.match(asciiView, begin, position);
+            return scanned(keyword != null ? keyword : identifierKind, begin, position);
+        }
+
+        if (AsciiScanner.isDigit(ch)) {
+            position = AsciiScanner.skipDigits(asciiView, begin, len);
+            return scanned(intConstKind, begin, position);
+        }
+
+        return dfa != null ? scanByDFA() : scanByHand();
+    }
+
+    /** 记录扫描出的词素 */
+    private boolean scanned(TokenKind kind, int begin, int end) {
+        scannedKind = kind;
+        scannedBegin = begin;
+        scannedEnd = end;
+        return true;
+    }
+
+    /**
+     * 直接从缓冲区中解析整数常量的值, 无需先构造出其文本
+     *
+     * @throws NumberFormatException 常量超出 int 的范围
+     */
+    private int parseIntConst(int begin, int end) {
+        int value = 0;
+        try {
+            for (int i = begin; i < end; i++) {
+                value = Math.addExact(Math.multiplyExact(value, 10), input.get(i) - '0');
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("IntConst out of range: " + textOf(begin, end));
+        }
+        return value;
+    }
+
+    /** 打开用于旁路输出 token 的文件, path 为 null 时不输出 */
+    private static BufferedWriter openTee(String path) {
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + path, e);
+        }
+    }
+
+    /** 将 token 写入旁路输出文件 */
+    private static void tee(BufferedWriter writer, Token token) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(token.toString());
+            writer.newLine();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when dumping tokens", e);
         }
-        tokens.add(Token.eof());
+    }
+
+    /** 读取缓冲区中指定位置的字符 */
+    private char charAt(int index) {
+        return (char) (input.get(index) & 0xff);
+    }
+
+    /** 截取缓冲区中 [begin, end) 范围内的文本 */
+    private String textOf(int begin, int end) {
+        final var bytes = new byte[end - begin];
+        input.get(begin, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
     }
 
     /** 判断当前字符是否为数字 */
@@ -167,6 +569,15 @@ public class LexicalAnalyzer {
         return tokens;
     }
 
+    /**
+     * 获得紧凑形式的词法分析结果, 保证在调用了 run 方法之后调用
+     *
+     * @return 保存 token 类型码点与词素范围的缓冲区
+     */
+    public TokenBuffer getTokenBuffer() {
+        return tokens;
+    }
+
     public void dumpTokens(String path) {
         FileUtils.writeLines(
             path,
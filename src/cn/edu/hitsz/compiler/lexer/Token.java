@@ -18,7 +18,7 @@ public class Token {
      * @return 代表 EOF 的 token
      */
     public static Token eof() {
-        return new Token(TokenKind.eof(), "");
+        return eofInstance;
     }
 
     /**
@@ -51,7 +51,17 @@ public class Token {
      * @return 具有该 token 类型的一正常 token (带其它文本, 比如标识符/数字文本)
      */
     public static Token normal(TokenKind kind, String text) {
-        return new Token(kind, text);
+        return new Token(kind, text, 0, false);
+    }
+
+    /**
+     * @param kind  token 类型
+     * @param text  源文本
+     * @param value 词法分析时预先得到的整数值, 比如整数常量的值, 或标识符在符号表中的编号
+     * @return 具有该 token 类型并带有整数值的一正常 token
+     */
+    public static Token normal(TokenKind kind, String text, int value) {
+        return new Token(kind, text, value, true);
     }
 
     /**
@@ -75,16 +85,42 @@ public class Token {
         return text;
     }
 
+    /**
+     * @return 该 token 是否带有预先解析出的整数值
+     */
+    public boolean hasValue() {
+        return hasValue;
+    }
+
+    /**
+     * @return 该 token 预先解析出的整数值
+     * @throws RuntimeException 该 token 不带有整数值
+     */
+    public int getValue() {
+        if (!hasValue) {
+            throw new RuntimeException("Token %s has no value".formatted(this));
+        }
+
+        return value;
+    }
+
     @Override
     public String toString() {
         return "(%s,%s)".formatted(kind, text);
     }
 
-    private Token(TokenKind kind, String text) {
+    private Token(TokenKind kind, String text, int value, boolean hasValue) {
         this.kind = kind;
         this.text = text;
+        this.value = value;
+        this.hasValue = hasValue;
     }
 
+    // EOF token 不带任何可变信息, 全局共享同一个实例
+    private static final Token eofInstance = new Token(TokenKind.eof(), "", 0, false);
+
     private final TokenKind kind;
     private final String text;
+    private final int value;
+    private final boolean hasValue;
 }
@@ -0,0 +1,182 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 紧凑存储的 token 序列
+ * <br>
+ * 与每个词素一个 Token 对象再加一个文本 String 的做法不同, 该类按列存储所有 token:
+ * 类型码点 ({@link TokenKind#getCode()}), 词素在源文件缓冲区中的起止位置, 以及预先解析出的整数值
+ * (IntConst 为常量的值, id 为标识符在符号表中的编号).
+ * 因此无论输入多大, 词法分析的结果都只占用几个 int 数组.
+ * <br>
+ * 需要 Token 对象的使用者 (比如各个 ActionObserver) 可以通过 {@link #getToken(int)} 或迭代器按需构造,
+ * 构造出的 Token 与直接分析得到的 Token 完全一致.
+ */
+public class TokenBuffer implements Iterable<Token> {
+    /**
+     * @param source 词素所在的源文件缓冲区
+     */
+    public TokenBuffer(ByteBuffer source) {
+        this.source = source;
+    }
+
+    /**
+     * 在末尾追加一个 token
+     *
+     * @param code  token 类型的码点
+     * @param begin 词素在源文件缓冲区中的起始位置
+     * @param end   词素在源文件缓冲区中的结束位置 (不含)
+     * @param value 预先解析出的整数值, 没有时任意
+     */
+    public void add(int code, int begin, int end, int value) {
+        ensureCapacity(size + 1);
+        codes[size] = code;
+        begins[size] = begin;
+        ends[size] = end;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * 在末尾按顺序追加另一缓冲区中的所有 token, 两者的词素必须位于同一源文件缓冲区中
+     *
+     * @param other 另一缓冲区
+     */
+    public void addAll(TokenBuffer other) {
+        if (other.source != source) {
+            throw new RuntimeException("Can NOT concat tokens from different sources");
+        }
+
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.codes, 0, codes, size, other.size);
+        System.arraycopy(other.begins, 0, begins, size, other.size);
+        System.arraycopy(other.ends, 0, ends, size, other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * 修改第 index 个 token 的整数值
+     */
+    public void setValue(int index, int value) {
+        values[index] = value;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > codes.length) {
+            final var capacity = Math.max(Math.max(INITIAL_CAPACITY, codes.length * 2), required);
+            codes = Arrays.copyOf(codes, capacity);
+            begins = Arrays.copyOf(begins, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    /**
+     * @return token 数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 第 index 个 token 的类型码点
+     */
+    public int getCode(int index) {
+        return codes[index];
+    }
+
+    /**
+     * @return 第 index 个 token 的词素起始位置
+     */
+    public int getBegin(int index) {
+        return begins[index];
+    }
+
+    /**
+     * @return 第 index 个 token 的词素结束位置 (不含)
+     */
+    public int getEnd(int index) {
+        return ends[index];
+    }
+
+    /**
+     * @return 第 index 个 token 预先解析出的整数值
+     */
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return 第 index 个 token 的类型
+     */
+    public TokenKind getKind(int index) {
+        return TokenKinds.fromCode(codes[index]);
+    }
+
+    /**
+     * 按需构造第 index 个 token 对应的 Token 对象
+     * <br>
+     * 与词法分析器直接产生的 Token 一致: 只有 id 与 IntConst 带有文本与整数值
+     *
+     * @param index 下标
+     * @return 构造出的 Token
+     */
+    public Token getToken(int index) {
+        final var kind = getKind(index);
+        if (kind == TokenKind.eof()) {
+            return Token.eof();
+        }
+
+        return switch (kind.getIdentifier()) {
+            case "id", "IntConst" -> Token.normal(kind, getText(index), values[index]);
+            default -> Token.simple(kind);
+        };
+    }
+
+    /**
+     * @return 第 index 个 token 的词素文本
+     */
+    public String getText(int index) {
+        final var bytes = new byte[ends[index] - begins[index]];
+        source.get(begins[index], bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return 依次按需构造每个 Token 的迭代器
+     */
+    @Override
+    public Iterator<Token> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Token next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return getToken(index++);
+            }
+        };
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ByteBuffer source;
+    private int[] codes = new int[0];
+    private int[] begins = new int[0];
+    private int[] ends = new int[0];
+    private int[] values = new int[0];
+    private int size = 0;
+}
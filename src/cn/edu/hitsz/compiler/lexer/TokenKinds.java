@@ -0,0 +1,49 @@
+package cn.edu.hitsz.compiler.lexer;
+
+/**
+ * 由码点查找 TokenKind 的索引
+ * <br>
+ * {@link TokenBuffer} 与各种二进制文件中只保存 token 类型的码点, 读出时需要由码点找回 TokenKind.
+ * 索引在第一次使用时由 {@link TokenKind#allAllowedTokenKinds()} 构造, 是一个以码点 + 1 为下标的数组 (EOF 的码点为 -1).
+ */
+public final class TokenKinds {
+    /**
+     * @param code 码点
+     * @return 具有该码点的 TokenKind
+     * @throws RuntimeException 码点文件尚未被读取, 或没有 TokenKind 具有该码点
+     */
+    public static TokenKind fromCode(int code) {
+        final var kinds = byCode();
+        final var index = code + 1;
+        if (index < 0 || index >= kinds.length || kinds[index] == null) {
+            throw new RuntimeException("Illegal code: " + code);
+        }
+
+        return kinds[index];
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    /** 码点文件只能读取一次, 因此索引构造后不再改变 */
+    private static volatile TokenKind[] byCode = null;
+
+    private static TokenKind[] byCode() {
+        var kinds = byCode;
+        if (kinds == null) {
+            final var allowed = TokenKind.allAllowedTokenKinds();
+            final var maxCode = allowed.values().stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+            kinds = new TokenKind[maxCode + 2];
+            for (final var kind : allowed.values()) {
+                kinds[kind.getCode() + 1] = kind;
+            }
+            // 码点文件尚未读取时不缓存空的索引
+            if (!allowed.isEmpty()) {
+                byCode = kinds;
+            }
+        }
+        return kinds;
+    }
+
+    private TokenKinds() {
+    }
+}
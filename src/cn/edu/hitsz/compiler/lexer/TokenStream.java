@@ -0,0 +1,15 @@
+package cn.edu.hitsz.compiler.lexer;
+
+/**
+ * 按需分析的 token 流, 见 {@link LexicalAnalyzer#lazyTokens(String)}
+ * <br>
+ * token 流可能持有旁路输出的文件. 读到 EOF 时文件会自动关闭; 提前停止读取 (比如语法分析出错) 时需要调用 {@link #close()},
+ * 以便写出已读取的 token 并释放文件. {@link cn.edu.hitsz.compiler.parser.SyntaxAnalyzer} 在分析结束时总会关闭它所读取的 token 流.
+ */
+public interface TokenStream extends Iterable<Token>, AutoCloseable {
+    /**
+     * 写出已读取的 token 并关闭旁路输出的文件, 可以重复调用
+     */
+    @Override
+    void close();
+}
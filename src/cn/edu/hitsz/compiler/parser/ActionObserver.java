@@ -48,6 +48,19 @@ public interface ActionObserver {
      */
     void whenAccept(Status currentStatus);
 
+    /**
+     * 该观察者是否需要得知按 production 进行的规约. 驱动程序据此略过所有观察者都不需要的单产生式 (形如 A -> B) 的规约,
+     * 见 {@link cn.edu.hitsz.compiler.parser.table.UnitProductionBypass}. 略过的规约不会调用 whenReduce.
+     * <br>
+     * 若观察者对某个单产生式的处理只是弹出一个值再原样压回, 就可以对它返回 false. 默认对所有产生式都返回 true
+     *
+     * @param production 产生式
+     * @return 是否需要在规约时调用 whenReduce
+     */
+    default boolean needsReduce(Production production) {
+        return true;
+    }
+
     /**
      * 当驱动程序接受符号表时会调用此函数, 实现此接口的类可以自行决定是否存储这个符号表
      *
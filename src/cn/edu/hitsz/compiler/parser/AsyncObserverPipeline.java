@@ -0,0 +1,203 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 在各自的线程中异步通知观察者的管道
+ * <br>
+ * 驱动程序把该类当作唯一的观察者: 每个 shift/reduce/accept 被写成一个紧凑的事件 (动作类型, 状态, 产生式, token)
+ * 放入一个单生产者, 多消费者的环形缓冲区. 每个被包装的观察者在自己的线程中按顺序读取全部事件并调用对应的方法,
+ * 因此各观察者看到的事件序列与同步调用时完全相同, 而语法分析, 语义分析与 IR 生成可以在多核机器上重叠执行.
+ * <br>
+ * 生产者在缓冲区写满时等待最慢的消费者; 遇到 accept 时生产者会等待所有消费者处理完全部事件再返回,
+ * 因此 {@link SyntaxAnalyzer#run()} 返回之后各观察者的结果都已就绪. 分析出错而没有 accept 时由 {@link #close()} 结束各线程.
+ * <br>
+ * 各观察者在不同的线程中运行, 它们之间共享的对象 (比如符号表) 需要是线程安全的.
+ */
+public class AsyncObserverPipeline implements ActionObserver, AutoCloseable {
+    /** 默认的环形缓冲区容量 */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * 创建管道并启动各观察者的线程
+     *
+     * @param observers 被包装的观察者, 每个观察者一个线程
+     * @param capacity  环形缓冲区容量, 必须是 2 的幂
+     */
+    public AsyncObserverPipeline(List<ActionObserver> observers, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity of the event ring must be a power of 2");
+        }
+        this.observers = List.copyOf(observers);
+        this.mask = capacity - 1;
+        this.kinds = new byte[capacity];
+        this.statuses = new Status[capacity];
+        this.productions = new Production[capacity];
+        this.tokens = new Token[capacity];
+        this.consumed = new AtomicLongArray(observers.size());
+        this.failures = new Throwable[observers.size()];
+
+        for (int i = 0; i < this.observers.size(); i++) {
+            final var index = i;
+            final var thread = new Thread(() -> consume(index), "observer-" + this.observers.get(i).getClass().getSimpleName());
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        publish(SHIFT, currentStatus, null, currentToken);
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        publish(REDUCE, currentStatus, production, null);
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        publish(ACCEPT, currentStatus, null, null);
+        // 完成屏障: 等待所有观察者处理完 accept
+        close();
+    }
+
+    @Override
+    public boolean needsReduce(Production production) {
+        return observers.stream().anyMatch(observer -> observer.needsReduce(production));
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // 各观察者注册时已经得到了符号表
+    }
+
+    /**
+     * 结束事件流并等待所有观察者线程结束. 任何观察者抛出的异常都会在这里重新抛出
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            publish(END, null, null, null);
+        }
+        for (final var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted when waiting for observers", e);
+            }
+        }
+        for (final var failure : failures) {
+            if (failure != null) {
+                throw new RuntimeException("Observer failed", failure);
+            }
+        }
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static final byte SHIFT = 1;
+    private static final byte REDUCE = 2;
+    private static final byte ACCEPT = 3;
+    /** 事件流结束 */
+    private static final byte END = 4;
+
+    /** 忙等若干次之后让出 CPU, 再之后短暂休眠 */
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 1000;
+    private static final long PARK_NANOS = 10_000;
+
+    private final List<ActionObserver> observers;
+    private final List<Thread> threads = new ArrayList<>();
+
+    /** 环形缓冲区, 第 sequence 个事件存放在下标 sequence & mask 处 */
+    private final int mask;
+    private final byte[] kinds;
+    private final Status[] statuses;
+    private final Production[] productions;
+    private final Token[] tokens;
+
+    /** 已发布的事件数, 写入该值之前事件的各个字段已经写好 */
+    private final AtomicLong published = new AtomicLong();
+    /** 各观察者已处理的事件数; 观察者出错后置为 Long.MAX_VALUE, 不再阻塞生产者 */
+    private final AtomicLongArray consumed;
+    private final Throwable[] failures;
+    /** 生产者下一个事件的序号, 只由生产者线程访问 */
+    private long next = 0;
+    private boolean closed = false;
+
+    private void publish(byte kind, Status status, Production production, Token token) {
+        // 等待最慢的观察者腾出位置
+        final var wrap = next - kinds.length;
+        for (int tries = 0; minConsumed() <= wrap; tries++) {
+            backOff(tries);
+        }
+
+        final var slot = (int) next & mask;
+        kinds[slot] = kind;
+        statuses[slot] = status;
+        productions[slot] = production;
+        tokens[slot] = token;
+        published.set(++next);
+    }
+
+    private long minConsumed() {
+        var min = Long.MAX_VALUE;
+        for (int i = 0; i < consumed.length(); i++) {
+            min = Math.min(min, consumed.get(i));
+        }
+        return min;
+    }
+
+    private void consume(int index) {
+        final var observer = observers.get(index);
+        long sequence = 0;
+        try {
+            while (true) {
+                long available;
+                for (int tries = 0; (available = published.get()) == sequence; tries++) {
+                    backOff(tries);
+                }
+
+                for (; sequence < available; sequence++) {
+                    final var slot = (int) sequence & mask;
+                    switch (kinds[slot]) {
+                        case SHIFT -> observer.whenShift(statuses[slot], tokens[slot]);
+                        case REDUCE -> observer.whenReduce(statuses[slot], productions[slot]);
+                        case ACCEPT -> observer.whenAccept(statuses[slot]);
+                        default -> {
+                            consumed.set(index, sequence + 1);
+                            return;
+                        }
+                    }
+                }
+                consumed.set(index, sequence);
+            }
+        } catch (Throwable e) {
+            failures[index] = e;
+            consumed.set(index, Long.MAX_VALUE);
+        }
+    }
+
+    private static void backOff(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * 由 {@link ParserGenerator} 生成的 LR 分析程序的基类
+ * <br>
+ * 生成的子类为每个状态生成一个方法, 方法中按向前看 token 的码点 switch 出该状态的动作并直接执行, 不再在运行时查分析表.
+ * 该类提供了状态栈与通知观察者的公共代码, 子类只需实现 {@link #step(int)}.
+ * <br>
+ * 分析过程中的状态保存在实例中, 因此同一个实例不能同时用于多次分析, 但可以依次重复使用.
+ */
+public abstract class GeneratedParser {
+    /**
+     * 对词法单元流进行分析, 并在执行动作时通知各观察者. 行为与 {@link SyntaxAnalyzer#run()} 相同
+     *
+     * @param tokens    词法单元流, 以 EOF 结束
+     * @param observers 观察者
+     */
+    public final void parse(Iterator<Token> tokens, ActionObserver[] observers) {
+        parse(tokens, observers, new boolean[productions.length]);
+    }
+
+    /**
+     * 与 {@link #parse(Iterator, ActionObserver[])} 相同, 但按 silent 中标记的产生式规约时不通知观察者
+     * <br>
+     * 生成的代码中 goto 已是常量, 无法再按 {@link cn.edu.hitsz.compiler.parser.table.UnitProductionBypass#apply} 越过状态,
+     * 因此这些规约仍会执行, 只是不通知观察者. 观察者收到的规约产生式序列与表驱动的分析过程略过单产生式时相同.
+     *
+     * @param tokens    词法单元流, 以 EOF 结束
+     * @param observers 观察者
+     * @param silent    下标为产生式编号, 为 true 的产生式的规约不通知观察者
+     */
+    public final void parse(Iterator<Token> tokens, ActionObserver[] observers, boolean[] silent) {
+        this.tokens = tokens;
+        this.observers = observers;
+        this.silent = silent;
+        this.top = 0;
+        stack[0] = initState;
+        token = tokens.next();
+        code = token.getKind().getCode();
+        try {
+            while (step(stack[top])) {
+                // 每一步执行一个动作
+            }
+        } finally {
+            this.tokens = null;
+            this.observers = null;
+            this.silent = null;
+            this.token = null;
+        }
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    protected GeneratedParser(ParseTable table) {
+        this.initState = table.getInitState();
+        this.statuses = new Status[table.getStateCount()];
+        for (int state = 0; state < statuses.length; state++) {
+            statuses[state] = table.getStatus(state);
+        }
+        this.productions = new Production[table.getProductionCount()];
+        for (int production = 0; production < productions.length; production++) {
+            productions[production] = table.getProduction(production);
+        }
+    }
+
+    /**
+     * @return 产生式编号的上界
+     */
+    int getProductionCount() {
+        return productions.length;
+    }
+
+    /**
+     * @return 编号为 production 的产生式, 不在表中时为 null
+     */
+    Production getProduction(int production) {
+        return productions[production];
+    }
+
+    /**
+     * 在状态 state 下执行一个动作
+     *
+     * @param state 栈顶状态
+     * @return 是否应继续分析
+     */
+    protected abstract boolean step(int state);
+
+    /** 移入当前 token 并转移到状态 target */
+    protected final void shift(int state, int target) {
+        final var status = statuses[state];
+        for (final var observer : observers) {
+            observer.whenShift(status, token);
+        }
+        push(target);
+        token = tokens.next();
+        code = token.getKind().getCode();
+    }
+
+    /** 通知各观察者按产生式 production 规约, 出栈与 goto 由子类完成 */
+    protected final void reduce(int state, int production) {
+        if (silent[production]) {
+            return;
+        }
+        final var status = statuses[state];
+        final var reduced = productions[production];
+        for (final var observer : observers) {
+            observer.whenReduce(status, reduced);
+        }
+    }
+
+    /** 接受 */
+    protected final boolean accept(int state) {
+        final var status = statuses[state];
+        for (final var observer : observers) {
+            observer.whenAccept(status);
+        }
+        return false;
+    }
+
+    /** 遇到错误, 停止分析 */
+    protected final boolean error() {
+        System.err.println("Syntax analyzer refuses to accept!");
+        return false;
+    }
+
+    protected final void push(int state) {
+        if (++top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top] = state;
+    }
+
+    /** 状态栈与栈顶下标 */
+    protected int[] stack = new int[64];
+    protected int top;
+    /** 向前看的 token 及其码点 */
+    protected Token token;
+    protected int code;
+
+    private final int initState;
+    private final Status[] statuses;
+    private final Production[] productions;
+    private Iterator<Token> tokens;
+    private ActionObserver[] observers;
+    private boolean[] silent;
+}
@@ -4,6 +4,7 @@ import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.IRVariablePool;
 import cn.edu.hitsz.compiler.ir.Instruction;
 import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
@@ -31,6 +32,11 @@ public class IRGenerator implements ActionObserver {
 //    private final Stack<Token> tokenStack = new Stack<>();
     /** value栈 */
     private final Stack<IRValue> valueStack = new Stack<>();
+    /** 整数常量与标识符的 TokenKind */
+    private final TokenKind intConstKind = TokenKind.fromString("IntConst");
+    private final TokenKind idKind = TokenKind.fromString("id");
+    /** 本次编译的 IR 变量池, 临时变量的编号只在池内递增 */
+    private final IRVariablePool variablePool = new IRVariablePool();
 
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
@@ -39,15 +45,25 @@ public class IRGenerator implements ActionObserver {
 //        tokenStack.push(currentToken);
 
         // 压入value，需要判断是立即数还是变量
-        String toMatch = "^[0-9]+$";
-        String text = currentToken.getText();
-        if(text.matches(toMatch)){
-            valueStack.push(IRImmediate.of(Integer.parseInt(text)));
+        // IntConst 的值已在词法分析时解析好, 无需再匹配文本
+        if (currentToken.getKind() == intConstKind) {
+            valueStack.push(IRImmediate.of(intValueOf(currentToken)));
+        } else if (currentToken.getKind() == idKind) {
+            // 标识符带有其在符号表中的编号时, 池按编号查找变量
+            valueStack.push(currentToken.hasValue()
+                ? variablePool.named(currentToken.getText(), currentToken.getValue())
+                : variablePool.named(currentToken.getText()));
         } else {
-            valueStack.push(IRVariable.named(text));
+            // 其余 token 的值只是占位符, 不会被读取
+            valueStack.push(null);
         }
     }
 
+    /** 获得整数常量 token 的值, 对于未预先解析值的 token 退回到解析文本 */
+    private static int intValueOf(Token token) {
+        return token.hasValue() ? token.getValue() : Integer.parseInt(token.getText());
+    }
+
     @Override
     public void whenReduce(Status currentStatus, Production production) {
         IRVariable result;
@@ -91,7 +107,7 @@ public class IRGenerator implements ActionObserver {
                 // 弹出E的value
                 lhs = valueStack.pop();
                 // 产生一个临时变量
-                variableTemp = IRVariable.temp();
+                variableTemp = variablePool.temp();
                 // 生成赋值指令的三地址指令code
                 IRList.add(Instruction.createAdd(variableTemp, lhs, rhs));
                 // 压入S的value占位符
@@ -106,7 +122,7 @@ public class IRGenerator implements ActionObserver {
                 // 弹出E的value
                 lhs = valueStack.pop();
                 // 产生一个临时变量
-                variableTemp = IRVariable.temp();
+                variableTemp = variablePool.temp();
                 // 生成赋值指令的三地址指令code
                 IRList.add(Instruction.createSub(variableTemp, lhs, rhs));
                 // 压入S的value占位符
@@ -121,7 +137,7 @@ public class IRGenerator implements ActionObserver {
                 // 弹出A的value
                 lhs = valueStack.pop();
                 // 产生一个临时变量
-                variableTemp = IRVariable.temp();
+                variableTemp = variablePool.temp();
                 // 生成赋值指令的三地址指令code
                 IRList.add(Instruction.createMul(variableTemp, lhs, rhs));
                 // 压入A的value占位符
@@ -163,6 +179,15 @@ public class IRGenerator implements ActionObserver {
     }
 
 
+    @Override
+    public boolean needsReduce(Production production) {
+        // E -> A, A -> B, B -> id, B -> IntConst 只是将值原样压回
+        return switch (production.index()) {
+            case 10, 12, 14, 15 -> false;
+            default -> true;
+        };
+    }
+
     @Override
     public void whenAccept(Status currentStatus) {
         // TODO
@@ -180,6 +205,13 @@ public class IRGenerator implements ActionObserver {
         return IRList;
     }
 
+    /**
+     * @return 生成的 IR 中的变量所属的池
+     */
+    public IRVariablePool getVariablePool() {
+        return variablePool;
+    }
+
     public void dumpIR(String path) {
         FileUtils.writeLines(path, getIR().stream().map(Instruction::toString).toList());
     }
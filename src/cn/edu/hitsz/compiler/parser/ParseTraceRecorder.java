@@ -0,0 +1,241 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.Term;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 将驱动程序的动作序列记录为紧凑二进制日志的观察者
+ * <br>
+ * 每增加一种分析都要重新进行一遍词法与语法分析. 该类把分析过程中的 shift/reduce/accept 依次写入文件,
+ * 之后可以用 {@link ParseTraceReplayer} 把同样的动作序列重放给任意观察者, 无需词法分析器与分析表,
+ * 从而可以稍后再进行分析, 或在多个线程中分别重放给不同的观察者.
+ * <br>
+ * 文件格式: 先是大端序的 int {@link #MAGIC} 与 {@link #VERSION}, 之后是一个个记录, 每个记录以一个字节的记录类型开头,
+ * 其后的整数均为变长编码 (LEB128, 有符号数先做 zigzag 变换):
+ * <pre>
+ * TEXT        字节数, UTF-8 字节     向文本池末尾追加一段文本, 文本以其在池中的字节偏移引用
+ * PRODUCTION  编号, 头, 体长, 体       定义一条产生式, 头为名字的文本偏移; 体中终结符记为码点 (不小于 -1), 非终结符记为 -2 - 文本偏移
+ * BEGIN       编号                   文法的起始产生式, 总是出现在所有动作之前
+ * SHIFT       状态, 码点, 文本        文本为文本偏移 + 1, 0 表示空文本
+ * SHIFT_VALUE 状态, 码点, 文本, 整数值  带有预先解析出的整数值的 token
+ * REDUCE      状态, 产生式编号
+ * ACCEPT      状态
+ * END                                日志结束
+ * </pre>
+ * 每段不同的文本与每条产生式只在第一次用到之前写入一次, 因此一次 shift 或 reduce 通常只占 3 至 5 个字节.
+ */
+public class ParseTraceRecorder implements ActionObserver, AutoCloseable {
+    /** 文件开头的魔数, 即 "LRTR" */
+    public static final int MAGIC = 0x4C525452;
+    /** 格式版本, 修改格式时需递增 */
+    public static final int VERSION = 1;
+
+    /**
+     * 创建日志文件并写入文件头
+     *
+     * @param path            日志文件路径
+     * @param beginProduction 文法的起始产生式, 重放时用于构造 {@link ProductionCollector} 等观察者
+     */
+    public ParseTraceRecorder(String path, Production beginProduction) {
+        try {
+            this.out = Files.newOutputStream(Paths.get(path));
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when creating parse trace " + path, e);
+        }
+        writeFixedInt(MAGIC);
+        writeFixedInt(VERSION);
+        define(beginProduction);
+        writeByte(BEGIN);
+        writeUnsigned(beginProduction.index());
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        final var text = currentToken.getText();
+        final var textRef = text.isEmpty() ? 0 : textOffset(text) + 1;
+        writeByte(currentToken.hasValue() ? SHIFT_VALUE : SHIFT);
+        writeUnsigned(currentStatus.index());
+        writeSigned(currentToken.getKind().getCode());
+        writeUnsigned(textRef);
+        if (currentToken.hasValue()) {
+            writeSigned(currentToken.getValue());
+        }
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        define(production);
+        writeByte(REDUCE);
+        writeUnsigned(currentStatus.index());
+        writeUnsigned(production.index());
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        writeByte(ACCEPT);
+        writeUnsigned(currentStatus.index());
+        // 分析已结束, 写入结束标记并关闭文件
+        close();
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // 符号表不记录在日志中
+    }
+
+    /**
+     * 写入结束标记并关闭文件. 分析出错而没有 accept 时需要手动调用
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writeByte(END);
+        try (out) {
+            flush();
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when closing parse trace", e);
+        }
+    }
+
+    /**
+     * @return 已写入的字节数
+     */
+    public long getSize() {
+        return written + size;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    static final byte TEXT = 1;
+    static final byte PRODUCTION = 2;
+    static final byte BEGIN = 3;
+    static final byte SHIFT = 4;
+    static final byte SHIFT_VALUE = 5;
+    static final byte REDUCE = 6;
+    static final byte ACCEPT = 7;
+    static final byte END = 8;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /** buffer 中尚未写出的字节数 */
+    private int size = 0;
+    /** 已写出到文件的字节数 */
+    private long written = 0;
+    private boolean closed = false;
+
+    /** 已写入文本池的文本及其偏移 */
+    private final Map<String, Integer> texts = new HashMap<>();
+    /** 文本池的字节数, 即下一段文本的偏移 */
+    private int poolSize = 0;
+    /** 已定义的产生式编号 */
+    private final BitSet defined = new BitSet();
+
+    /**
+     * @return 文本在文本池中的偏移, 第一次出现时先写入 TEXT 记录
+     */
+    private int textOffset(String text) {
+        final var offset = texts.get(text);
+        if (offset != null) {
+            return offset;
+        }
+
+        final var utf8 = text.getBytes(StandardCharsets.UTF_8);
+        writeByte(TEXT);
+        writeUnsigned(utf8.length);
+        writeBytes(utf8);
+        texts.put(text, poolSize);
+        poolSize += utf8.length;
+        return poolSize - utf8.length;
+    }
+
+    /**
+     * 产生式第一次出现时写入 PRODUCTION 记录
+     */
+    private void define(Production production) {
+        if (defined.get(production.index())) {
+            return;
+        }
+        defined.set(production.index());
+
+        // 先写入所有名字, 它们的 TEXT 记录不能夹在 PRODUCTION 记录中间
+        final var head = textOffset(production.head().getTermName());
+        final var body = new int[production.body().size()];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = encodeTerm(production.body().get(i));
+        }
+
+        writeByte(PRODUCTION);
+        writeUnsigned(production.index());
+        writeUnsigned(head);
+        writeUnsigned(body.length);
+        for (final var term : body) {
+            writeSigned(term);
+        }
+    }
+
+    private int encodeTerm(Term term) {
+        return term instanceof TokenKind kind ? kind.getCode() : -2 - textOffset(term.getTermName());
+    }
+
+    private void writeByte(int value) {
+        if (size == buffer.length) {
+            flush();
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] bytes) {
+        for (final var value : bytes) {
+            writeByte(value);
+        }
+    }
+
+    private void writeFixedInt(int value) {
+        writeByte(value >>> 24);
+        writeByte(value >>> 16);
+        writeByte(value >>> 8);
+        writeByte(value);
+    }
+
+    /** LEB128: 每字节存低 7 位, 最高位表示后面是否还有字节 */
+    private void writeUnsigned(int value) {
+        while ((value & ~0x7F) != 0) {
+            writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte(value);
+    }
+
+    /** zigzag 变换后绝对值较小的负数也只占很少的字节 */
+    private void writeSigned(int value) {
+        writeUnsigned((value << 1) ^ (value >> 31));
+    }
+
+    private void flush() {
+        try {
+            out.write(buffer, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when writing parse trace", e);
+        }
+        written += size;
+        size = 0;
+    }
+}
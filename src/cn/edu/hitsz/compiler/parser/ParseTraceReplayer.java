@@ -0,0 +1,251 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.lexer.TokenKinds;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.Term;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 将 {@link ParseTraceRecorder} 记录的动作序列重放给观察者
+ * <br>
+ * 用法与 {@link SyntaxAnalyzer} 相同: 注册观察者后调用 {@link #run()}, 各观察者会按记录时的顺序收到完全相同的
+ * shift/reduce/accept, 但不需要词法分析器与分析表. 重放时的状态只带有编号, 与从 {@link cn.edu.hitsz.compiler.parser.table.TableCache}
+ * 读出的状态一样, 只用于通知观察者.
+ * <br>
+ * 日志中不含符号表. 若给出了符号表, 重放时每个 id 都会被加入符号表 (已存在则不变), 并以其在该符号表中的编号作为 token 的整数值,
+ * 这样从空符号表开始重放也能得到与词法分析之后相同的符号表.
+ * <br>
+ * 日志以内存映射的方式读入, 同一个实例可以多次重放; 每次重放各自解码, 因此不同的实例或
+ * {@link #dumpProductions(String)} 可以在不同的线程中同时进行.
+ */
+public class ParseTraceReplayer {
+    /**
+     * 读取日志文件
+     *
+     * @param path        由 {@link ParseTraceRecorder} 写出的日志文件路径
+     * @param symbolTable 重放时用于登记 id 的符号表, 为 null 时保留日志中记录的整数值
+     * @return 重放器
+     */
+    public static ParseTraceReplayer load(String path, SymbolTable symbolTable) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return new ParseTraceReplayer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), symbolTable);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when reading parse trace " + path, e);
+        }
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+    }
+
+    /**
+     * @return 文法的起始产生式
+     */
+    public Production getBeginProduction() {
+        return beginProduction;
+    }
+
+    /**
+     * 将日志中的全部动作依次重放给各观察者
+     */
+    public void run() {
+        new Decoder(source).replay(observers.toArray(new ActionObserver[0]));
+    }
+
+    /**
+     * 由日志生成与 {@link ProductionCollector#dumpToFile(String)} 相同的规约列表, 不通知已注册的观察者
+     *
+     * @param path 输出文件路径
+     */
+    public void dumpProductions(String path) {
+        final var collector = new ProductionCollector(beginProduction);
+        new Decoder(source).replay(new ActionObserver[]{collector});
+        collector.dumpToFile(path);
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private final ByteBuffer source;
+    private final Production beginProduction;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    private final SymbolTable symbolTable;
+
+    private ParseTraceReplayer(ByteBuffer source, SymbolTable symbolTable) {
+        this.source = source;
+        this.symbolTable = symbolTable;
+        if (source.remaining() < 2 * Integer.BYTES
+            || source.getInt(0) != ParseTraceRecorder.MAGIC
+            || source.getInt(Integer.BYTES) != ParseTraceRecorder.VERSION) {
+            throw new RuntimeException("Not a parse trace of version " + ParseTraceRecorder.VERSION);
+        }
+        this.beginProduction = new Decoder(source).begin();
+    }
+
+    /**
+     * 一次重放的解码状态. 文本池, 产生式与状态都在解码过程中按需建立
+     */
+    private class Decoder {
+        private final ByteBuffer buffer;
+        /** 下标为文本池中的字节偏移, 只有各段文本的起始处不为 null */
+        private String[] texts = new String[256];
+        private int poolSize = 0;
+        private Production[] productions = new Production[64];
+        private Status[] statuses = new Status[64];
+
+        Decoder(ByteBuffer source) {
+            this.buffer = source.duplicate();
+            this.buffer.position(2 * Integer.BYTES);
+        }
+
+        /**
+         * 读到 BEGIN 记录为止, 返回起始产生式
+         */
+        Production begin() {
+            try {
+                while (true) {
+                    switch (buffer.get()) {
+                        case ParseTraceRecorder.TEXT -> readText();
+                        case ParseTraceRecorder.PRODUCTION -> readProduction();
+                        case ParseTraceRecorder.BEGIN -> {
+                            return productions[readUnsigned()];
+                        }
+                        default -> throw new RuntimeException("Parse trace does not start with its begin production");
+                    }
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new RuntimeException("Parse trace is truncated", e);
+            }
+        }
+
+        void replay(ActionObserver[] observers) {
+            try {
+                while (true) {
+                    final var record = buffer.get();
+                    switch (record) {
+                        case ParseTraceRecorder.TEXT -> readText();
+                        case ParseTraceRecorder.PRODUCTION -> readProduction();
+                        case ParseTraceRecorder.BEGIN -> readUnsigned();
+                        case ParseTraceRecorder.SHIFT, ParseTraceRecorder.SHIFT_VALUE -> {
+                            final var status = statusOf(readUnsigned());
+                            final var token = readToken(record == ParseTraceRecorder.SHIFT_VALUE);
+                            for (final var observer : observers) {
+                                observer.whenShift(status, token);
+                            }
+                        }
+                        case ParseTraceRecorder.REDUCE -> {
+                            final var status = statusOf(readUnsigned());
+                            final var production = productions[readUnsigned()];
+                            for (final var observer : observers) {
+                                observer.whenReduce(status, production);
+                            }
+                        }
+                        case ParseTraceRecorder.ACCEPT -> {
+                            final var status = statusOf(readUnsigned());
+                            for (final var observer : observers) {
+                                observer.whenAccept(status);
+                            }
+                        }
+                        case ParseTraceRecorder.END -> {
+                            return;
+                        }
+                        default -> throw new RuntimeException("Corrupted parse trace at " + (buffer.position() - 1));
+                    }
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new RuntimeException("Parse trace is truncated", e);
+            }
+        }
+
+        private Token readToken(boolean hasValue) {
+            final var code = readSigned();
+            final var textRef = readUnsigned();
+            final var recordedValue = hasValue ? readSigned() : 0;
+            if (code == TokenKind.eof().getCode()) {
+                return Token.eof();
+            }
+
+            final var kind = TokenKinds.fromCode(code);
+            final var text = textRef == 0 ? "" : texts[textRef - 1];
+            if (!hasValue) {
+                return Token.normal(kind, text);
+            }
+            // 标识符的编号以重放时的符号表为准
+            final var value = symbolTable != null && kind.getIdentifier().equals("id")
+                ? symbolTable.getOrAdd(text).getId()
+                : recordedValue;
+            return Token.normal(kind, text, value);
+        }
+
+        private void readText() {
+            final var bytes = new byte[readUnsigned()];
+            buffer.get(bytes);
+            if (poolSize >= texts.length) {
+                texts = Arrays.copyOf(texts, Math.max(texts.length * 2, poolSize + 1));
+            }
+            texts[poolSize] = new String(bytes, StandardCharsets.UTF_8);
+            poolSize += bytes.length;
+        }
+
+        private void readProduction() {
+            final var index = readUnsigned();
+            final var head = new NonTerminal(texts[readUnsigned()]);
+            final var length = readUnsigned();
+            final var body = new ArrayList<Term>(length);
+            for (int i = 0; i < length; i++) {
+                final var term = readSigned();
+                body.add(term >= -1 ? TokenKinds.fromCode(term) : new NonTerminal(texts[-2 - term]));
+            }
+            if (index >= productions.length) {
+                productions = Arrays.copyOf(productions, Math.max(productions.length * 2, index + 1));
+            }
+            productions[index] = new Production(index, head, body);
+        }
+
+        private Status statusOf(int index) {
+            if (index >= statuses.length) {
+                statuses = Arrays.copyOf(statuses, Math.max(statuses.length * 2, index + 1));
+            }
+            if (statuses[index] == null) {
+                statuses[index] = Status.create(index);
+            }
+            return statuses[index];
+        }
+
+        private int readUnsigned() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                final var part = buffer.get();
+                value |= (part & 0x7F) << shift;
+                if (part >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private int readSigned() {
+            final var zigzag = readUnsigned();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
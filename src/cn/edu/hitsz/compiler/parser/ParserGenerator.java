@@ -0,0 +1,299 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.CompiledLRTable;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 由 LR 分析表生成专用的 LR 分析程序
+ * <br>
+ * 生成的分析程序是 {@link GeneratedParser} 的子类: 每个状态对应一个方法, 方法中按向前看 token 的码点 switch 到该状态的各个动作,
+ * 移入与规约的目标状态, 产生式长度以及 goto 都作为常量写在代码中; 每个非终结符的 goto 同样对应一个按状态 switch 的方法.
+ * 这样分析的主循环中不再需要解码动作, 也不再访问分析表数组, 分支的预测也按状态区分开了.
+ * <br>
+ * 若分析表中有默认动作 ({@link ParseTable#defaultAction(int)}, 比如 {@link cn.edu.hitsz.compiler.parser.table.PackedLRTable} 的默认规约),
+ * 生成的代码中会以 switch 的 default 分支表示, 生成的代码也就更短. 不在文法中的终结符与表驱动时一样立即报错, 会单独列为错误分支.
+ * <br>
+ * 生成的 Java 源码在内存中由 javax.tools 编译, 并作为隐藏类加载, 因此运行时需要 JDK. 表驱动的 {@link SyntaxAnalyzer} 仍是参考实现.
+ */
+public class ParserGenerator {
+    /** 生成的类的名字 */
+    public static final String CLASS_NAME = "LRParser";
+
+    /**
+     * 生成分析程序的 Java 源码
+     *
+     * @param table     分析表
+     * @param className 生成的类的名字, 该类位于 {@code cn.edu.hitsz.compiler.parser} 包中
+     * @return Java 源码
+     */
+    public static String generateSource(ParseTable table, String className) {
+        return new ParserGenerator(table, className).generate();
+    }
+
+    /**
+     * 生成, 编译并加载分析程序
+     *
+     * @param table 分析表
+     * @return 分析程序的实例
+     */
+    public static GeneratedParser compile(ParseTable table) {
+        final var bytes = compileSource(generateSource(table, CLASS_NAME));
+        try {
+            final var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return lookup.lookupClass()
+                .asSubclass(GeneratedParser.class)
+                .getConstructor(ParseTable.class)
+                .newInstance(table);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to load generated parser", e);
+        }
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    /** 一个 switch 方法中最多的分支数, 超出时按顺序拆分, 避免超出 JVM 对方法长度的限制 */
+    private static final int MAX_CASES = 1024;
+
+    private final ParseTable table;
+    private final String className;
+    private final StringBuilder out = new StringBuilder();
+    /** 各终结符的码点, 按码点排序, 包括不在文法中的终结符 */
+    private final int[] codes;
+
+    private ParserGenerator(ParseTable table, String className) {
+        this.table = table;
+        this.className = className;
+        this.codes = TokenKind.allAllowedTokenKinds().values().stream()
+            .mapToInt(TokenKind::getCode)
+            .sorted()
+            .toArray();
+    }
+
+    private String generate() {
+        out.append("package cn.edu.hitsz.compiler.parser;\n\n");
+        out.append("import cn.edu.hitsz.compiler.parser.table.ParseTable;\n\n");
+        out.append("/**\n * 由 ParserGenerator 生成的 LR 分析程序, 请勿修改\n */\n");
+        out.append("public final class ").append(className).append(" extends GeneratedParser {\n");
+        out.append("    public ").append(className).append("(ParseTable table) {\n");
+        out.append("        super(table);\n");
+        out.append("    }\n\n");
+
+        // 按状态分派
+        final var dispatch = new TreeMap<Integer, String>();
+        for (int state = 0; state < table.getStateCount(); state++) {
+            dispatch.put(state, "return s" + state + "();");
+        }
+        out.append("    @Override\n");
+        generateSwitch("protected boolean", "step", dispatch, "return error();");
+
+        for (int state = 0; state < table.getStateCount(); state++) {
+            generateState(state);
+        }
+
+        // 产生式的头所在的各个 goto 列
+        final var heads = new TreeMap<Integer, Boolean>();
+        for (int production = 0; production < table.getProductionCount(); production++) {
+            if (table.getProduction(production) != null && table.headOf(production) >= 0) {
+                heads.put(table.headOf(production), true);
+            }
+        }
+        for (final var head : heads.keySet()) {
+            generateGoto(head);
+        }
+
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * 生成状态 state 的方法: 按码点 switch 到各个动作, 执行相同动作的码点合并到同一个分支
+     */
+    private void generateState(int state) {
+        final var defaultAction = table.defaultAction(state);
+        final Map<Integer, List<Integer>> codesByAction = new LinkedHashMap<>();
+        for (final var code : codes) {
+            final var action = table.action(state, table.columnOf(code));
+            if (action != defaultAction) {
+                codesByAction.computeIfAbsent(action, key -> new ArrayList<>()).add(code);
+            }
+        }
+
+        out.append("    private boolean s").append(state).append("() {\n");
+        if (codesByAction.isEmpty()) {
+            // 不需要向前看即可决定动作
+            out.append("        ").append(actionCode(state, defaultAction)).append("\n");
+        } else {
+            out.append("        switch (code) {\n");
+            for (final var entry : codesByAction.entrySet()) {
+                out.append("            case ")
+                    .append(entry.getValue().stream().map(String::valueOf).collect(Collectors.joining(", ")))
+                    .append(": ")
+                    .append(actionCode(state, entry.getKey()))
+                    .append("\n");
+            }
+            out.append("            default: ").append(actionCode(state, defaultAction)).append("\n");
+            out.append("        }\n");
+        }
+        out.append("    }\n\n");
+    }
+
+    /**
+     * @return 在状态 state 下执行动作 action 的语句
+     */
+    private String actionCode(int state, int action) {
+        final var target = CompiledLRTable.targetOf(action);
+        return switch (CompiledLRTable.kindOf(action)) {
+            case CompiledLRTable.SHIFT -> "shift(%d, %d); return true;".formatted(state, target);
+            case CompiledLRTable.REDUCE -> {
+                final var head = table.headOf(target);
+                final var length = table.lengthOf(target);
+                final var pop = length > 0 ? "top -= %d; ".formatted(length) : "";
+                yield head < 0
+                    ? "reduce(%d, %d); return error();".formatted(state, target)
+                    : "reduce(%d, %d); %spush(g%d(stack[top])); return true;".formatted(state, target, pop, head);
+            }
+            case CompiledLRTable.ACCEPT -> "return accept(%d);".formatted(state);
+            default -> "return error();";
+        };
+    }
+
+    /**
+     * 生成非终结符列 head 的 goto 方法, 出现最多的目标状态作为 default 分支
+     */
+    private void generateGoto(int head) {
+        final Map<Integer, Integer> counts = new HashMap<>();
+        final var targets = new int[table.getStateCount()];
+        for (int state = 0; state < targets.length; state++) {
+            targets[state] = table.goto_(state, head);
+            if (targets[state] != CompiledLRTable.NO_GOTO) {
+                counts.merge(targets[state], 1, Integer::sum);
+            }
+        }
+        final var defaultTarget = counts.entrySet().stream()
+            .max(Map.Entry.<Integer, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+            .map(Map.Entry::getKey)
+            .orElse(CompiledLRTable.NO_GOTO);
+
+        final var cases = new TreeMap<Integer, String>();
+        for (int state = 0; state < targets.length; state++) {
+            if (targets[state] != defaultTarget && targets[state] != CompiledLRTable.NO_GOTO) {
+                cases.put(state, "return " + targets[state] + ";");
+            }
+        }
+        generateSwitch("private static int", "g" + head, cases, "return " + defaultTarget + ";");
+    }
+
+    /**
+     * 生成一个以 int state 为参数, 按 state switch 的方法. 分支过多时拆分为多个方法, 由原方法按 state 的范围依次调用
+     *
+     * @param modifiers   方法的修饰符与返回类型
+     * @param name        方法名
+     * @param cases       各分支的 state 与语句
+     * @param defaultCase default 分支的语句
+     */
+    private void generateSwitch(String modifiers, String name, TreeMap<Integer, String> cases, String defaultCase) {
+        final var keys = new ArrayList<>(cases.keySet());
+        if (keys.size() > MAX_CASES) {
+            out.append("    ").append(modifiers).append(' ').append(name).append("(int state) {\n");
+            final var parts = (keys.size() + MAX_CASES - 1) / MAX_CASES;
+            for (int part = 0; part < parts; part++) {
+                final var last = keys.get(Math.min(keys.size(), (part + 1) * MAX_CASES) - 1);
+                out.append("        if (state <= ").append(last).append(") {\n");
+                out.append("            return ").append(name).append('_').append(part).append("(state);\n");
+                out.append("        }\n");
+            }
+            out.append("        ").append(defaultCase).append("\n");
+            out.append("    }\n\n");
+
+            for (int part = 0; part < parts; part++) {
+                final var from = keys.get(part * MAX_CASES);
+                final var to = keys.get(Math.min(keys.size(), (part + 1) * MAX_CASES) - 1);
+                generateSwitch(modifiers.replace("protected", "private"), name + '_' + part, new TreeMap<>(cases.subMap(from, true, to, true)), defaultCase);
+            }
+            return;
+        }
+
+        out.append("    ").append(modifiers).append(' ').append(name).append("(int state) {\n");
+        out.append("        switch (state) {\n");
+        for (final var entry : cases.entrySet()) {
+            out.append("            case ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        out.append("            default: ").append(defaultCase).append("\n");
+        out.append("        }\n");
+        out.append("    }\n\n");
+    }
+
+    /**
+     * 在内存中编译生成的源码
+     *
+     * @return 生成的类的字节码
+     */
+    private static byte[] compileSource(String source) {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("Java compiler is not available, generating parsers requires a JDK");
+        }
+
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final var outputs = new HashMap<String, ByteArrayOutputStream>();
+        final var sourceFile = new SimpleJavaFileObject(
+            URI.create("string:///cn/edu/hitsz/compiler/parser/" + CLASS_NAME + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        final var standardManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        try (final var fileManager = new ForwardingJavaFileManager<>(standardManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        final var output = new ByteArrayOutputStream();
+                        outputs.put(className, output);
+                        return output;
+                    }
+                };
+            }
+        }) {
+            final var options = List.of("-classpath", System.getProperty("java.class.path"), "-proc:none", "-g:none");
+            final var success = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(sourceFile)).call();
+            if (!success) {
+                final var messages = diagnostics.getDiagnostics().stream()
+                    .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                    .map(diagnostic -> diagnostic.getMessage(null))
+                    .collect(Collectors.joining("\n"));
+                throw new RuntimeException("Failed to compile generated parser:\n" + messages);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when compiling generated parser", e);
+        }
+
+        return outputs.get("cn.edu.hitsz.compiler.parser." + CLASS_NAME).toByteArray();
+    }
+}
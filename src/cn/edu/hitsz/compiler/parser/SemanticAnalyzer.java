@@ -44,7 +44,11 @@ public class SemanticAnalyzer implements ActionObserver {
                 // 弹出D的type
                 curType = typeStack.pop();
                 // 将符号表中id的type更新为D的type
-                this.symbolTable.get(curToken.getText()).setType(curType);
+                // 词法分析时已记录了 id 在符号表中的编号, 可以直接按编号查找
+                final var entry = curToken.hasValue()
+                    ? this.symbolTable.get(curToken.getValue())
+                    : this.symbolTable.get(curToken.getText());
+                entry.setType(curType);
                 // 压入S的token占位符
                 tokenStack.push(null);
                 // 压入S的type占位符
@@ -73,6 +77,12 @@ public class SemanticAnalyzer implements ActionObserver {
         }
     }
 
+    @Override
+    public boolean needsReduce(Production production) {
+        // 只有 S -> D id 与 D -> int 会用到栈中的内容, 其余产生式压入的占位符不会被读取, 因此单产生式的规约可以略过
+        return production.body().size() != 1 || production.index() == 4 || production.index() == 5;
+    }
+
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
         // TODO: 该过程在遇到 shift 时要采取的代码动作
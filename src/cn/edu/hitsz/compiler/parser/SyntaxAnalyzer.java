@@ -1,10 +1,13 @@
 package cn.edu.hitsz.compiler.parser;
 
 import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenStream;
 import cn.edu.hitsz.compiler.parser.table.*;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
 
 import java.util.*;
+import java.util.function.IntFunction;
 
 //TODO: 实验二: 实现 LR 语法分析驱动程序
 
@@ -19,13 +22,32 @@ import java.util.*;
 public class SyntaxAnalyzer {
     private final SymbolTable symbolTable;
     private final List<ActionObserver> observers = new ArrayList<>();
-    /**  输入缓冲区 */
-    private final Queue<Token> token_queue = new LinkedList<>();
+    /**  输入的词法单元流, 按需读取 */
+    private Iterator<Token> token_iterator;
+    /**  按需分析的词法单元流, 需要在分析结束时关闭, 其余情况为 null */
+    private TokenStream token_stream = null;
+    /**  向前看的词法单元, 尚未读取时为 null */
+    private Token lookahead = null;
     private LRTable lrTable;
-    /**  符号栈 */
-    private final Stack<Symbol> symbol_stack = new Stack<>();
-    /**  状态栈 */
-    private final Stack<Status> status_stack = new Stack<>();
+    /**  由 lrTable 编译出的数组形式的分析表, 分析时只使用它 */
+    private ParseTable compiledTable;
+    /**  由分析表生成的专用分析程序, 不为 null 时 run 直接交由它分析 */
+    private GeneratedParser generatedParser = null;
+    /**  是否略过所有观察者都不需要的单产生式规约 */
+    private boolean bypassUnitProductions = false;
+    /**  是否在各自的线程中异步通知观察者 */
+    private boolean asyncObservers = false;
+    /**  紧凑存储的词法单元, 不为 null 时按下标读取, 只在通知观察者时才构造 Token 对象 */
+    private TokenBuffer token_buffer = null;
+    /**  token_buffer 中向前看的词法单元的下标 */
+    private int token_position = 0;
+    /**
+     *  状态栈, 只保存状态编号, [0, status_top] 为栈中的元素
+     *  <br>
+     *  观察者无法访问驱动程序的栈, 而分析过程只需要状态, 因此不再维护符号栈
+     */
+    private int[] status_stack = new int[64];
+    private int status_top = -1;
 
 
     public SyntaxAnalyzer(SymbolTable symbolTable) {
@@ -83,11 +105,44 @@ public class SyntaxAnalyzer {
         // 需要注意的是, 在实现驱动程序的过程中, 你会需要面对只读取一个 token 而不能消耗它的情况,
         // 在自行设计的时候请加以考虑此种情况
 
-        // 对于只读取一个 token 而不能消耗它的情况，可以使用队列和栈的peek函数
-        for(Token token : tokens) {
-            token_queue.offer(token);
+        // 不复制 token 列表, 只保存迭代器并额外缓存一个向前看的 token
+        // 这样在 token 流为按需分析时, 内存占用只与向前看的长度有关
+        this.token_iterator = tokens.iterator();
+        this.token_stream = tokens instanceof TokenStream stream ? stream : null;
+        this.lookahead = null;
+        // 词法分析器给出的 TokenBuffer 可以直接按下标读取类型码点, 移入时不必构造 Token
+        this.token_buffer = tokens instanceof TokenBuffer buffer ? buffer : null;
+        this.token_position = 0;
+    }
+
+    /** 向前看的词法单元的类型码点 */
+    private int peekCode() {
+        return token_buffer != null ? token_buffer.getCode(token_position) : peekToken().getKind().getCode();
+    }
+
+    /** 读取但不消耗下一个词法单元 */
+    private Token peekToken() {
+        if (lookahead == null) {
+            lookahead = token_iterator.next();
+        }
+        return lookahead;
+    }
+
+    /** 消耗掉向前看的词法单元 */
+    private void consumeToken() {
+        if (token_buffer != null) {
+            token_position++;
+        } else {
+            lookahead = null;
         }
+    }
 
+    /** 压入状态 */
+    private void pushStatus(int state) {
+        if (++status_top == status_stack.length) {
+            status_stack = Arrays.copyOf(status_stack, status_top * 2);
+        }
+        status_stack[status_top] = state;
     }
 
     public void loadLRTable(LRTable table) {
@@ -95,6 +150,62 @@ public class SyntaxAnalyzer {
         // 你可以自行选择要如何使用该表格:
         // 是直接对 LRTable 调用 getAction/getGoto, 抑或是直接将 initStatus 存起来使用
         this.lrTable = table;
+        // 预先将分析表展开为数组, 分析过程中不再需要按终结符名字查 HashMap
+        this.compiledTable = CompiledLRTable.compile(table);
+    }
+
+    /**
+     * 直接加载数组形式的分析表, 比如从 {@link TableCache} 中读出的分析表, 或压缩后的 {@link PackedLRTable}
+     *
+     * @param table 数组形式的分析表
+     */
+    public void loadLRTable(ParseTable table) {
+        this.lrTable = null;
+        this.compiledTable = table;
+    }
+
+    /**
+     * 使用由 {@link ParserGenerator} 生成的分析程序代替表驱动的分析过程
+     *
+     * @param parser 生成的分析程序
+     */
+    public void loadGeneratedParser(GeneratedParser parser) {
+        this.generatedParser = parser;
+    }
+
+    /**
+     * 略过所有已注册的观察者都不需要的单产生式规约, 见 {@link UnitProductionBypass}
+     * <br>
+     * 使用生成的分析程序时不修改 goto, 这些规约仍会执行, 只是不通知观察者, 见 {@link GeneratedParser#parse(Iterator, ActionObserver[], boolean[])}
+     */
+    public void enableUnitProductionBypass() {
+        this.bypassUnitProductions = true;
+    }
+
+    /**
+     * @param count         产生式编号的上界
+     * @param productionOf  由编号取得产生式, 不在表中时为 null
+     * @return 各产生式的规约是否可以不通知观察者, 下标为产生式编号
+     */
+    private boolean[] silentReductions(int count, IntFunction<Production> productionOf) {
+        final var silent = new boolean[count];
+        if (!bypassUnitProductions) {
+            return silent;
+        }
+        for (int index = 0; index < silent.length; index++) {
+            final var production = productionOf.apply(index);
+            silent[index] = production != null
+                && UnitProductionBypass.isUnitProduction(production)
+                && observers.stream().noneMatch(observer -> observer.needsReduce(production));
+        }
+        return silent;
+    }
+
+    /**
+     * 在各自的线程中异步通知各观察者, 见 {@link AsyncObserverPipeline}. run 返回时各观察者都已处理完所有动作
+     */
+    public void enableAsyncObservers() {
+        this.asyncObservers = true;
     }
 
     public void run() {
@@ -103,106 +214,98 @@ public class SyntaxAnalyzer {
         // 请分别在遇到 Shift, Reduce, Accept 的时候调用上面的 callWhenInShift, callWhenInReduce, callWhenInAccept
         // 否则用于为实验二打分的产生式输出可能不会正常工作
 
-        // 初始化符号栈
-        symbol_stack.push(new Symbol(Token.eof()));
+        try {
+            if (asyncObservers && !observers.isEmpty()) {
+                // 以管道代替已注册的观察者, 分析结束后恢复
+                final var registered = List.copyOf(observers);
+                try (final var pipeline = new AsyncObserverPipeline(registered, AsyncObserverPipeline.DEFAULT_CAPACITY)) {
+                    observers.clear();
+                    observers.add(pipeline);
+                    parse();
+                } finally {
+                    observers.clear();
+                    observers.addAll(registered);
+                }
+            } else {
+                parse();
+            }
+        } finally {
+            // 分析出错时 token 流没有读到 EOF, 在这里关闭以写出其旁路输出
+            if (token_stream != null) {
+                token_stream.close();
+            }
+        }
+    }
+
+    /**
+     * 分析过程, 依次通知 observers 中的各个观察者
+     */
+    private void parse() {
+        if (generatedParser != null) {
+            final var silent = silentReductions(generatedParser.getProductionCount(), generatedParser::getProduction);
+            generatedParser.parse(token_iterator, observers.toArray(new ActionObserver[0]), silent);
+            return;
+        }
 
         // 初始化状态栈
-        status_stack.push(lrTable.getInit());
-
-        // flag用于判断是否循环结束
-        boolean flag = true;
-        do {
-            Status curState = status_stack.peek();
-            Token curToken = token_queue.peek();
-            assert curToken != null;
-            Action curAction = lrTable.getAction(curState, curToken);
-
-            switch (curAction.getKind()) {
-                case Shift : {
-                    // 移入
-                    callWhenInShift(curState, curToken);
+        var table = compiledTable;
+        final var silent = silentReductions(table.getProductionCount(), table::getProduction);
+        if (bypassUnitProductions && table instanceof CompiledLRTable compiled) {
+            // 越过只会按可略过的单产生式规约的状态
+            table = UnitProductionBypass.apply(compiled, production -> silent[production.index()]);
+        }
+        status_top = -1;
+        pushStatus(table.getInitState());
+        final var notify = !observers.isEmpty();
+
+        // 向前看 token 在分析表中的列号, 只在消耗 token 后才需要重新计算
+        int column = table.columnOf(peekCode());
 
-                    final var shiftTo = curAction.getStatus();
-                    // 压入状态
-                    status_stack.push(shiftTo);
-                    // 压入符号
-                    symbol_stack.push(new Symbol(curToken));
-                    // 弹出输入缓冲区队列中的符号
-                    token_queue.poll();
+        // 主循环中只有数组访问, 除了为观察者构造的 Token 之外不分配对象
+        while (true) {
+            final int curState = status_stack[status_top];
+            final int curAction = table.action(curState, column);
 
-                    break;
+            switch (CompiledLRTable.kindOf(curAction)) {
+                case CompiledLRTable.SHIFT -> {
+                    // 移入
+                    if (notify) {
+                        final var curToken = token_buffer != null ? token_buffer.getToken(token_position) : peekToken();
+                        callWhenInShift(table.getStatus(curState), curToken);
+                    }
+                    // 压入状态, 并消耗掉输入流中的符号
+                    pushStatus(CompiledLRTable.targetOf(curAction));
+                    consumeToken();
+                    column = table.columnOf(peekCode());
                 }
-                case Reduce : {
+                case CompiledLRTable.REDUCE -> {
                     // 规约
-                    Production curProduction = curAction.getProduction();
-                    callWhenInReduce(curState, curProduction);
-
-                    // 符号栈和状态栈中分别弹出产生式长度个的元素
-                    for (int i = 0; i < curProduction.body().size(); i++){
-                        status_stack.pop();
-                        symbol_stack.pop();
+                    final int production = CompiledLRTable.targetOf(curAction);
+                    if (notify && !silent[production]) {
+                        callWhenInReduce(table.getStatus(curState), table.getProduction(production));
                     }
 
-                    // 当前的栈顶元素
-                    curState = status_stack.peek();
-                    // 获取当前产生式左部
-                    NonTerminal head = curProduction.head();
-                    // 压入状态
-                    status_stack.push(lrTable.getGoto(curState, head));
-                    // 压入符号
-                    symbol_stack.push(new Symbol(head));
-
-                    break;
+                    // 状态栈中弹出产生式长度个的元素, 再压入 goto 到的状态
+                    status_top -= table.lengthOf(production);
+                    final int goto_ = table.goto_(status_stack[status_top], table.headOf(production));
+                    if (goto_ == CompiledLRTable.NO_GOTO) {
+                        // 转移到错误状态, 此后的任何动作都只能是错误
+                        System.err.println("Syntax analyzer refuses to accept!");
+                        return;
+                    }
+                    pushStatus(goto_);
                 }
-                case Accept : {
+                case CompiledLRTable.ACCEPT -> {
                     // 接收状态
-                    callWhenInAccept(curState);
-
-                    // 终止循环
-                    flag = false;
-
-                    break;
+                    callWhenInAccept(table.getStatus(curState));
+                    return;
                 }
-                case Error : {
+                default -> {
                     // 错误状态
                     System.err.println("Syntax analyzer refuses to accept!");
-
-                    // 终止循环
-                    flag = false;
-
-                    break;
+                    return;
                 }
-                default : break;
             }
-
-        } while (flag);
-
-    }
-}
-
-/**  实现 Union<Token, NonTerminal> 的功能 */
-class Symbol{
-    Token token;
-    NonTerminal nonTerminal;
-
-    private Symbol(Token token, NonTerminal nonTerminal){
-        this.token = token;
-        this.nonTerminal = nonTerminal;
-    }
-
-    public Symbol(Token token){
-        this(token, null);
-    }
-
-    public Symbol(NonTerminal nonTerminal){
-        this(null, nonTerminal);
-    }
-
-    public boolean isToken(){
-        return this.token != null;
-    }
-
-    public boolean isNonterminal(){
-        return this.nonTerminal != null;
+        }
     }
 }
@@ -0,0 +1,283 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 由 LRTable 编译出的紧凑 LR 分析表
+ * <br>
+ * LRTable 中每个状态各自保存 TokenKind 到 Action 的 HashMap, 每一步分析都要对终结符的名字做一次哈希.
+ * 该类将所有状态的 action 与 goto 分别展开为一个以 (状态编号, 列号) 为下标的 int 数组:
+ * 终结符的列号由 token 类型的码点直接查表得到, 非终结符的列号与产生式的头一同预先算好, 驱动程序在分析过程中只需做数组访问.
+ * <br>
+ * action 表中的每个动作被压缩为一个 int: 低 {@link #KIND_BITS} 位为动作类型, 其余高位为移入的目标状态编号或规约的产生式编号.
+ * 错误动作恰好为 0. 可以使用 {@link #kindOf(int)} 与 {@link #targetOf(int)} 解出这两部分.
+ * <br>
+ * 为了通知各观察者, 该表同时保留了编号到 Status 与 Production 对象的映射, 但在分析的主循环中不会访问它们.
+ */
+public class CompiledLRTable implements ParseTable {
+    /** 动作类型, 与 {@link Action.ActionKind} 一一对应 */
+    public static final int ERROR = 0;
+    public static final int SHIFT = 1;
+    public static final int REDUCE = 2;
+    public static final int ACCEPT = 3;
+
+    /** 动作类型所占的位数 */
+    public static final int KIND_BITS = 2;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    /** goto 表中表示错误的值 */
+    public static final int NO_GOTO = -1;
+
+    /**
+     * 编译 LR 分析表
+     *
+     * @param table 原分析表
+     * @return 编译出的紧凑分析表
+     */
+    public static CompiledLRTable compile(LRTable table) {
+        return build(table);
+    }
+
+    /**
+     * @param kind   动作类型
+     * @param target 目标状态编号或产生式编号
+     * @return 压缩后的动作
+     */
+    public static int pack(int kind, int target) {
+        return (target << KIND_BITS) | kind;
+    }
+
+    /**
+     * @param action 压缩后的动作
+     * @return 动作类型, 为 ERROR, SHIFT, REDUCE, ACCEPT 之一
+     */
+    public static int kindOf(int action) {
+        return action & KIND_MASK;
+    }
+
+    /**
+     * @param action 压缩后的动作
+     * @return 移入动作的目标状态编号, 或规约动作的产生式编号
+     */
+    public static int targetOf(int action) {
+        return action >>> KIND_BITS;
+    }
+
+    @Override
+    public int getInitState() {
+        return initState;
+    }
+
+    @Override
+    public int columnOf(int tokenCode) {
+        final var index = tokenCode + 1;
+        return index >= 0 && index < columnByCode.length ? columnByCode[index] : -1;
+    }
+
+    @Override
+    public int action(int state, int column) {
+        return column < 0 ? ERROR : actions[state * terminalCount + column];
+    }
+
+    /**
+     * 未压缩的分析表中每一格都单独存放, 因此没有默认动作
+     */
+    @Override
+    public int defaultAction(int state) {
+        return ERROR;
+    }
+
+    @Override
+    public int goto_(int state, int nonTerminal) {
+        return gotos[state * nonTerminalCount + nonTerminal];
+    }
+
+    @Override
+    public int headOf(int production) {
+        return heads[production];
+    }
+
+    @Override
+    public int lengthOf(int production) {
+        return lengths[production];
+    }
+
+    @Override
+    public Status getStatus(int state) {
+        return statuses[state];
+    }
+
+    @Override
+    public Production getProduction(int production) {
+        return productions[production];
+    }
+
+    @Override
+    public int getProductionCount() {
+        return productions.length;
+    }
+
+    @Override
+    public int getStateCount() {
+        return statuses.length;
+    }
+
+    @Override
+    public Production getBeginProduction() {
+        return beginProduction;
+    }
+
+    /**
+     * @return 各个 int 数组所占的总字节数, 不含 Status 与 Production 对象
+     */
+    public long getFootprintBytes() {
+        final long ints = (long) columnByCode.length + actions.length + gotos.length + heads.length + lengths.length;
+        return ints * Integer.BYTES;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    CompiledLRTable(int terminalCount, int nonTerminalCount, int initState, int[] columnByCode,
+                    int[] actions, int[] gotos, int[] heads, Production[] productions, Status[] statuses) {
+        this.terminalCount = terminalCount;
+        this.nonTerminalCount = nonTerminalCount;
+        this.initState = initState;
+        this.columnByCode = columnByCode;
+        this.actions = actions;
+        this.gotos = gotos;
+        this.heads = heads;
+        this.productions = productions;
+        this.statuses = statuses;
+
+        this.lengths = new int[productions.length];
+        Production begin = null;
+        for (final var production : productions) {
+            if (production == null) {
+                continue;
+            }
+            if (begin == null) {
+                begin = production;
+            }
+            lengths[production.index()] = production.body().size();
+        }
+        this.beginProduction = begin;
+    }
+
+    private static CompiledLRTable build(LRTable table) {
+        final var terminals = table.getTerminals();
+        final var nonTerminals = table.getNonTerminals();
+        final var statusList = table.getStatusInIndexOrder();
+        final var terminalCount = terminals.size();
+        final var nonTerminalCount = nonTerminals.size();
+
+        // 终结符: 码点 -> 列号
+        final var maxCode = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        final var columnByCode = new int[maxCode + 2];
+        Arrays.fill(columnByCode, -1);
+        for (int column = 0; column < terminalCount; column++) {
+            columnByCode[terminals.get(column).getCode() + 1] = column;
+        }
+
+        final var stateCount = statusList.stream().mapToInt(Status::index).max().orElse(-1) + 1;
+        final var statuses = new Status[stateCount];
+        for (final var status : statusList) {
+            statuses[status.index()] = status;
+        }
+
+        // 文法中的全部产生式, 以及表中出现的产生式, 按编号存放
+        final var productionsByIndex = new TreeMap<Integer, Production>();
+        for (final var production : GrammarInfo.getProductionsInOrder()) {
+            productionsByIndex.put(production.index(), production);
+        }
+        final var actions = new int[stateCount * terminalCount];
+        final var gotos = new int[stateCount * nonTerminalCount];
+        Arrays.fill(gotos, NO_GOTO);
+        for (final var status : statusList) {
+            final var state = status.index();
+            for (int column = 0; column < terminalCount; column++) {
+                final var action = status.getAction(terminals.get(column));
+                actions[state * terminalCount + column] = switch (action.getKind()) {
+                    case Shift -> pack(SHIFT, action.getStatus().index());
+                    case Reduce -> {
+                        final var production = action.getProduction();
+                        productionsByIndex.put(production.index(), production);
+                        yield pack(REDUCE, production.index());
+                    }
+                    case Accept -> pack(ACCEPT, 0);
+                    case Error -> ERROR;
+                };
+            }
+            for (int column = 0; column < nonTerminalCount; column++) {
+                final var goto_ = status.getGoto(nonTerminals.get(column));
+                if (!goto_.isError()) {
+                    gotos[state * nonTerminalCount + column] = goto_.index();
+                }
+            }
+        }
+
+        final var productions = new Production[productionsByIndex.lastKey() + 1];
+        productionsByIndex.values().forEach(production -> productions[production.index()] = production);
+
+        // 每个产生式的头在 goto 表中的列号, 不在表中的 (如起始产生式的头) 为 -1
+        final Map<NonTerminal, Integer> nonTerminalColumns = new HashMap<>();
+        for (int column = 0; column < nonTerminalCount; column++) {
+            nonTerminalColumns.put(nonTerminals.get(column), column);
+        }
+        final var heads = new int[productions.length];
+        for (final var production : productions) {
+            if (production != null) {
+                heads[production.index()] = nonTerminalColumns.getOrDefault(production.head(), -1);
+            }
+        }
+
+        return new CompiledLRTable(
+            terminalCount, nonTerminalCount, table.getInit().index(), columnByCode, actions, gotos, heads, productions, statuses);
+    }
+
+    int getTerminalCount() {
+        return terminalCount;
+    }
+
+    int getNonTerminalCount() {
+        return nonTerminalCount;
+    }
+
+    int[] getColumnByCode() {
+        return columnByCode;
+    }
+
+    int[] getActions() {
+        return actions;
+    }
+
+    int[] getGotos() {
+        return gotos;
+    }
+
+    int[] getHeads() {
+        return heads;
+    }
+
+    Production[] getProductions() {
+        return productions;
+    }
+
+    private final int terminalCount;
+    private final int nonTerminalCount;
+    private final int initState;
+    /** 下标为码点 + 1 */
+    private final int[] columnByCode;
+    private final int[] actions;
+    private final int[] gotos;
+    /** 下标为产生式编号 */
+    private final int[] heads;
+    private final int[] lengths;
+    private final Production[] productions;
+    private final Status[] statuses;
+    private final Production beginProduction;
+}
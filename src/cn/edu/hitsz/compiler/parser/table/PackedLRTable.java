@@ -0,0 +1,348 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 以行位移 (comb-vector) 方式压缩存储的 LR 分析表
+ * <br>
+ * {@link CompiledLRTable} 为每个状态都保存完整的一行 action 与 goto, 而其中绝大多数都是错误动作. 该类按 yacc 的做法压缩这两张表:
+ * <ul>
+ *     <li>默认规约: action 表每行中出现次数最多的规约动作作为该行的默认动作, 该行的错误动作也一并改为默认规约.
+ *     这样只会在发现错误之前多做几次规约, 不会移入错误的 token, 因此仍能在同一个位置发现错误.
+ *     不在文法中的终结符 (列号为 -1) 不做默认规约, 直接得到错误动作</li>
+ *     <li>合并相同的行: 去掉默认动作后完全相同的行只保存一次, 各状态只记录自己使用的行号</li>
+ *     <li>行位移: 每行剩下的动作按 "基址 + 列号" 依次嵌入同一个数组 next 的空位中, 同时在 check 数组的相同位置记下所属的行号.
+ *     查表时若 check 中的行号不符, 说明该位置没有这一行的动作, 应使用默认动作</li>
+ * </ul>
+ * goto 表按非终结符分列压缩: 每列中出现次数最多的目标状态作为该列的默认值, 其余的目标同样以行位移方式存放.
+ * 驱动程序只会在规约之后查 goto 表, 此时转移总是存在的, 因此不需要记录 goto 表中的错误.
+ */
+public class PackedLRTable implements ParseTable {
+    /**
+     * 压缩编译后的分析表
+     *
+     * @param table 编译后的分析表
+     * @return 压缩后的分析表
+     */
+    public static PackedLRTable pack(CompiledLRTable table) {
+        return build(table);
+    }
+
+    @Override
+    public int getInitState() {
+        return initState;
+    }
+
+    @Override
+    public int columnOf(int tokenCode) {
+        final var index = tokenCode + 1;
+        return index >= 0 && index < columnByCode.length ? columnByCode[index] : -1;
+    }
+
+    @Override
+    public int action(int state, int column) {
+        // 不在文法中的终结符不会被默认规约, 与 CompiledLRTable 一样立即报错
+        if (column < 0) {
+            return CompiledLRTable.ERROR;
+        }
+        final var row = rowOf[state];
+        final var index = actionBase[row] + column;
+        return actionCheck[index] == row ? actionNext[index] : defaultActions[row];
+    }
+
+    /**
+     * @return 该状态所在行的默认动作, 即压缩时出现次数最多的规约, 或 {@link CompiledLRTable#ERROR}
+     */
+    @Override
+    public int defaultAction(int state) {
+        return defaultActions[rowOf[state]];
+    }
+
+    /**
+     * goto 表的空位都被各列的默认值取代, 因此该方法从不返回 {@link CompiledLRTable#NO_GOTO}, 只能用于确实存在转移的 (状态, 非终结符)
+     */
+    @Override
+    public int goto_(int state, int nonTerminal) {
+        final var index = gotoBase[nonTerminal] + state;
+        return gotoCheck[index] == nonTerminal ? gotoNext[index] : defaultGotos[nonTerminal];
+    }
+
+    @Override
+    public int headOf(int production) {
+        return heads[production];
+    }
+
+    @Override
+    public int lengthOf(int production) {
+        return lengths[production];
+    }
+
+    @Override
+    public Status getStatus(int state) {
+        return statuses[state];
+    }
+
+    @Override
+    public Production getProduction(int production) {
+        return productions[production];
+    }
+
+    @Override
+    public int getProductionCount() {
+        return productions.length;
+    }
+
+    @Override
+    public int getStateCount() {
+        return statuses.length;
+    }
+
+    @Override
+    public Production getBeginProduction() {
+        return beginProduction;
+    }
+
+    /**
+     * @return 合并相同的行之后 action 表的行数
+     */
+    public int getRowCount() {
+        return defaultActions.length;
+    }
+
+    /**
+     * @return 各个 int 数组所占的总字节数, 不含 Status 与 Production 对象
+     */
+    public long getFootprintBytes() {
+        long ints = 0;
+        for (final var array : List.of(columnByCode, rowOf, defaultActions, actionBase, actionNext, actionCheck,
+            defaultGotos, gotoBase, gotoNext, gotoCheck, heads, lengths)) {
+            ints += array.length;
+        }
+        return ints * Integer.BYTES;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private PackedLRTable(CompiledLRTable table, int[] rowOf, int[] defaultActions, int[] actionBase,
+                          int[] actionNext, int[] actionCheck, int[] defaultGotos, int[] gotoBase,
+                          int[] gotoNext, int[] gotoCheck) {
+        this.initState = table.getInitState();
+        this.columnByCode = table.getColumnByCode();
+        this.heads = table.getHeads();
+        this.productions = table.getProductions();
+        this.beginProduction = table.getBeginProduction();
+        this.lengths = new int[productions.length];
+        for (int production = 0; production < productions.length; production++) {
+            if (productions[production] != null) {
+                lengths[production] = table.lengthOf(production);
+            }
+        }
+        this.statuses = new Status[table.getStateCount()];
+        for (int state = 0; state < statuses.length; state++) {
+            statuses[state] = table.getStatus(state);
+        }
+
+        this.rowOf = rowOf;
+        this.defaultActions = defaultActions;
+        this.actionBase = actionBase;
+        this.actionNext = actionNext;
+        this.actionCheck = actionCheck;
+        this.defaultGotos = defaultGotos;
+        this.gotoBase = gotoBase;
+        this.gotoNext = gotoNext;
+        this.gotoCheck = gotoCheck;
+    }
+
+    /**
+     * 去掉默认值后的一行: 依次为各个剩余项的列号与值
+     */
+    private record Row(int defaultValue, int[] columns, int[] values) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Row other && defaultValue == other.defaultValue
+                && Arrays.equals(columns, other.columns) && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * defaultValue + Arrays.hashCode(columns)) + Arrays.hashCode(values);
+        }
+    }
+
+    private static PackedLRTable build(CompiledLRTable table) {
+        final var stateCount = table.getStateCount();
+        final var terminalCount = table.getTerminalCount();
+        final var nonTerminalCount = table.getNonTerminalCount();
+        final var actions = table.getActions();
+        final var gotos = table.getGotos();
+
+        // action 表: 求出每行的默认规约, 并合并相同的行
+        final var rowOf = new int[stateCount];
+        final var rows = new ArrayList<Row>();
+        final Map<Row, Integer> rowIndex = new HashMap<>();
+        final var line = new int[terminalCount];
+        for (int state = 0; state < stateCount; state++) {
+            System.arraycopy(actions, state * terminalCount, line, 0, terminalCount);
+            final var row = stripDefault(line, defaultReduction(line), CompiledLRTable.ERROR);
+            rowOf[state] = rowIndex.computeIfAbsent(row, key -> {
+                rows.add(key);
+                return rows.size() - 1;
+            });
+        }
+        final var defaultActions = rows.stream().mapToInt(Row::defaultValue).toArray();
+        final var actionComb = Comb.pack(rows, terminalCount);
+
+        // goto 表: 按列压缩, 每列以出现次数最多的目标作为默认值
+        final var columns = new ArrayList<Row>(nonTerminalCount);
+        final var column = new int[stateCount];
+        for (int nonTerminal = 0; nonTerminal < nonTerminalCount; nonTerminal++) {
+            for (int state = 0; state < stateCount; state++) {
+                column[state] = gotos[state * nonTerminalCount + nonTerminal];
+            }
+            columns.add(stripDefault(column, mostFrequent(column, CompiledLRTable.NO_GOTO), CompiledLRTable.NO_GOTO));
+        }
+        final var defaultGotos = columns.stream().mapToInt(Row::defaultValue).toArray();
+        final var gotoComb = Comb.pack(columns, stateCount);
+
+        return new PackedLRTable(table, rowOf, defaultActions, actionComb.base, actionComb.next, actionComb.check,
+            defaultGotos, gotoComb.base, gotoComb.next, gotoComb.check);
+    }
+
+    /**
+     * @return 一行 action 中出现次数最多的规约动作, 没有规约动作时为错误动作
+     */
+    private static int defaultReduction(int[] line) {
+        final var reductions = Arrays.stream(line)
+            .map(action -> CompiledLRTable.kindOf(action) == CompiledLRTable.REDUCE ? action : CompiledLRTable.ERROR)
+            .toArray();
+        return mostFrequent(reductions, CompiledLRTable.ERROR);
+    }
+
+    /**
+     * @return values 中除 ignored 外出现次数最多的值, 次数相同时取较小的值; 全为 ignored 时返回 ignored
+     */
+    private static int mostFrequent(int[] values, int ignored) {
+        final var sorted = Arrays.stream(values).filter(value -> value != ignored).sorted().toArray();
+        int best = ignored;
+        int bestCount = 0;
+        for (int begin = 0, end; begin < sorted.length; begin = end) {
+            end = begin;
+            while (end < sorted.length && sorted[end] == sorted[begin]) {
+                end++;
+            }
+            if (end - begin > bestCount) {
+                best = sorted[begin];
+                bestCount = end - begin;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 去掉一行中的默认值. 若默认值不是 error, 则 error 也被默认值取代
+     */
+    private static Row stripDefault(int[] line, int defaultValue, int error) {
+        int count = 0;
+        for (final var value : line) {
+            if (value != defaultValue && value != error) {
+                count++;
+            }
+        }
+        final var columns = new int[count];
+        final var values = new int[count];
+        count = 0;
+        for (int column = 0; column < line.length; column++) {
+            if (line[column] != defaultValue && line[column] != error) {
+                columns[count] = column;
+                values[count++] = line[column];
+            }
+        }
+        return new Row(defaultValue, columns, values);
+    }
+
+    /**
+     * 行位移压缩的结果. 第 row 行第 column 列的值存放在 next[base[row] + column] 中, 当且仅当 check 中的对应位置为 row
+     */
+    private record Comb(int[] base, int[] next, int[] check) {
+        /**
+         * 按剩余项数从多到少的顺序, 为每行找到最小的基址, 使得该行的各项都落在空位上
+         *
+         * @param rows  各行
+         * @param width 行宽, 即列数
+         */
+        static Comb pack(List<Row> rows, int width) {
+            final var order = new Integer[rows.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (a, b) -> Integer.compare(rows.get(b).columns().length, rows.get(a).columns().length));
+
+            final var base = new int[rows.size()];
+            final var occupied = new BitSet();
+            int size = 0;
+            for (final var index : order) {
+                final var columns = rows.get(index).columns();
+                if (columns.length == 0) {
+                    continue;
+                }
+                // 第一项必须落在空位上, 因此只需从第一个空位开始尝试
+                int candidate = occupied.nextClearBit(columns[0]) - columns[0];
+                while (!fits(occupied, candidate, columns)) {
+                    candidate = occupied.nextClearBit(candidate + columns[0] + 1) - columns[0];
+                }
+                base[index] = candidate;
+                for (final var column : columns) {
+                    occupied.set(candidate + column);
+                }
+                size = Math.max(size, candidate + columns[columns.length - 1] + 1);
+            }
+
+            // 末尾留出一整行, 查表时无需检查下标越界
+            final var next = new int[size + width];
+            final var check = new int[size + width];
+            Arrays.fill(check, -1);
+            for (int index = 0; index < rows.size(); index++) {
+                final var row = rows.get(index);
+                for (int i = 0; i < row.columns().length; i++) {
+                    next[base[index] + row.columns()[i]] = row.values()[i];
+                    check[base[index] + row.columns()[i]] = index;
+                }
+            }
+            return new Comb(base, next, check);
+        }
+
+        private static boolean fits(BitSet occupied, int base, int[] columns) {
+            for (final var column : columns) {
+                if (occupied.get(base + column)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final int initState;
+    /** 下标为码点 + 1 */
+    private final int[] columnByCode;
+    /** 各状态使用的 action 行 */
+    private final int[] rowOf;
+    /** 下标为 action 行号 */
+    private final int[] defaultActions;
+    private final int[] actionBase;
+    private final int[] actionNext;
+    private final int[] actionCheck;
+    /** 下标为非终结符的列号 */
+    private final int[] defaultGotos;
+    private final int[] gotoBase;
+    private final int[] gotoNext;
+    private final int[] gotoCheck;
+    /** 下标为产生式编号 */
+    private final int[] heads;
+    private final int[] lengths;
+    private final Production[] productions;
+    private final Status[] statuses;
+    private final Production beginProduction;
+}
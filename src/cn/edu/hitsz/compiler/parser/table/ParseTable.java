@@ -0,0 +1,84 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+/**
+ * 驱动程序在分析过程中使用的数组形式的 LR 分析表
+ * <br>
+ * 状态, 终结符列与非终结符列均以整数编号表示. action 的编码方式见 {@link CompiledLRTable}, 可以使用
+ * {@link CompiledLRTable#kindOf(int)} 与 {@link CompiledLRTable#targetOf(int)} 解出动作类型与目标.
+ *
+ * @see CompiledLRTable
+ * @see PackedLRTable
+ */
+public interface ParseTable {
+    /**
+     * @return 起始状态的编号
+     */
+    int getInitState();
+
+    /**
+     * @param tokenCode token 类型的码点
+     * @return 该类型的终结符在 action 表中的列号, 不在表中时为 -1
+     */
+    int columnOf(int tokenCode);
+
+    /**
+     * @param state  状态编号
+     * @param column 终结符的列号, 为 -1 时返回错误动作
+     * @return 压缩后的动作
+     */
+    int action(int state, int column);
+
+    /**
+     * @param state 状态编号
+     * @return 该状态下未在表中单独列出的终结符所对应的动作, 没有默认动作时为 {@link CompiledLRTable#ERROR}.
+     * 不在文法中的终结符 (列号为 -1) 不使用默认动作, 见 {@link #action(int, int)}
+     */
+    int defaultAction(int state);
+
+    /**
+     * @param state       状态编号
+     * @param nonTerminal 非终结符的列号
+     * @return 应转移到的状态编号, 错误时为 {@link CompiledLRTable#NO_GOTO}. 压缩的分析表可能以某个默认状态代替错误,
+     * 见 {@link PackedLRTable#goto_(int, int)}
+     */
+    int goto_(int state, int nonTerminal);
+
+    /**
+     * @param production 产生式编号
+     * @return 该产生式的头在 goto 表中的列号
+     */
+    int headOf(int production);
+
+    /**
+     * @param production 产生式编号
+     * @return 该产生式体的长度
+     */
+    int lengthOf(int production);
+
+    /**
+     * @param state 状态编号
+     * @return 对应的状态, 用于通知观察者
+     */
+    Status getStatus(int state);
+
+    /**
+     * @param production 产生式编号
+     * @return 对应的产生式, 用于通知观察者
+     */
+    Production getProduction(int production);
+
+    /**
+     * @return 产生式编号的上界, 编号在 [0, 该值) 之外的产生式不会出现在表中
+     */
+    int getProductionCount();
+
+    /**
+     * @return 状态数
+     */
+    int getStateCount();
+
+    /**
+     * @return 文法的起始产生式, 即文法文件中的第一条产生式
+     */
+    Production getBeginProduction();
+}
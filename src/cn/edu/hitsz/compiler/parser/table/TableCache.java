@@ -0,0 +1,282 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.lexer.TokenKinds;
+import cn.edu.hitsz.compiler.utils.FilePathConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 编译后的 LR 分析表的二进制缓存
+ * <br>
+ * 从 CSV 读取分析表需要切分每个单元格, 并按产生式文本查找每个规约动作的产生式; 从文法构造分析表则更慢.
+ * 该类将 {@link CompiledLRTable} 的各个数组与产生式原样写入一个二进制文件, 下次运行时直接以内存映射的方式读入,
+ * 无需再读取 CSV 或解析文法文件.
+ * <br>
+ * 文件头中记录了格式版本与所有输入文件 (文法, 码点表, 以及构造分析表所用的其它文件) 内容的 SHA-256 摘要.
+ * 任何一个输入发生变化, 或缓存文件不存在, 损坏, 版本不符时, 都会重新构造分析表并覆盖缓存.
+ * <br>
+ * 文件格式 (大端序):
+ * <pre>
+ * int    MAGIC, VERSION
+ * byte[] 输入摘要 (32 字节)
+ * int    终结符数, 非终结符数, 状态数, 起始状态
+ * int    码点表长度, int[] 码点表
+ * int[]  action 表 (状态数 * 终结符数), goto 表 (状态数 * 非终结符数)
+ * int    产生式表长度, int[] 各产生式的头所在的列
+ * int    名字数, 之后每个名字为 int 字节数 + UTF-8 字节
+ * 每个产生式: int 体长 (不存在的编号为 -1), int 头的名字序号, int[] 体中的各项
+ * </pre>
+ * 产生式体中的终结符记为其码点 (不小于 -1), 非终结符记为 -2 - 名字序号.
+ */
+public class TableCache {
+    /** 文件开头的魔数, 即 "LRTB" */
+    public static final int MAGIC = 0x4C525442;
+    /** 格式版本, 修改格式时需递增 */
+    public static final int VERSION = 1;
+
+    /**
+     * 读取由 CSV 分析表编译出的分析表, 缓存失效时重新读取 CSV
+     *
+     * @param tablePath CSV 格式的分析表路径
+     * @param cachePath 缓存文件路径
+     * @return 编译后的分析表
+     */
+    public static CompiledLRTable loadCSV(String tablePath, String cachePath) {
+        return load(cachePath, "csv", List.of(tablePath), () -> new TableLoader().load(tablePath));
+    }
+
+    /**
+     * 读取缓存的分析表, 缓存失效时使用 builder 构造分析表并写入缓存
+     * <br>
+     * 文法文件与码点表总会被计入摘要, 无需出现在 inputPaths 中
+     *
+     * @param cachePath  缓存文件路径
+     * @param variant    区分同一组输入构造出的不同分析表 (比如不同的构造算法) 的标签
+     * @param inputPaths 构造分析表所用的其它输入文件
+     * @param builder    构造分析表的过程
+     * @return 编译后的分析表
+     */
+    public static CompiledLRTable load(String cachePath, String variant, List<String> inputPaths, Supplier<LRTable> builder) {
+        final var digest = digestOf(variant, inputPaths);
+        final var path = Paths.get(cachePath);
+
+        if (Files.isRegularFile(path)) {
+            final var cached = tryRead(path, digest);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final var table = CompiledLRTable.compile(builder.get());
+        write(path, digest, table);
+        return table;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static final int DIGEST_LENGTH = 32;
+
+    /**
+     * 计算格式版本, 变体标签, 以及全部输入文件内容的摘要
+     */
+    private static byte[] digestOf(String variant, List<String> inputPaths) {
+        final var paths = new ArrayList<String>();
+        paths.add(FilePathConfig.GRAMMAR_PATH);
+        paths.add(FilePathConfig.CODING_MAP_PATH);
+        paths.addAll(inputPaths);
+
+        try {
+            final var sha = MessageDigest.getInstance("SHA-256");
+            sha.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, VERSION));
+            sha.update(variant.getBytes(StandardCharsets.UTF_8));
+            for (final var input : paths) {
+                final var content = Files.readAllBytes(Paths.get(input));
+                // 先写入长度, 避免不同的文件划分得到相同的字节串
+                sha.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, content.length));
+                sha.update(content);
+            }
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when hashing table inputs", e);
+        }
+    }
+
+    /**
+     * 以内存映射的方式读取缓存
+     *
+     * @return 读出的分析表, 缓存无效时为 null
+     */
+    private static CompiledLRTable tryRead(Path path, byte[] digest) {
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            final var stored = new byte[DIGEST_LENGTH];
+            buffer.get(stored);
+            if (!Arrays.equals(stored, digest)) {
+                return null;
+            }
+
+            final var terminalCount = buffer.getInt();
+            final var nonTerminalCount = buffer.getInt();
+            final var stateCount = buffer.getInt();
+            final var initState = buffer.getInt();
+            final var columnByCode = readInts(buffer, buffer.getInt());
+            final var actions = readInts(buffer, stateCount * terminalCount);
+            final var gotos = readInts(buffer, stateCount * nonTerminalCount);
+            final var heads = readInts(buffer, buffer.getInt());
+
+            final var names = new NonTerminal[buffer.getInt()];
+            for (int i = 0; i < names.length; i++) {
+                final var bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                names[i] = new NonTerminal(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            final var productions = new Production[heads.length];
+            for (int index = 0; index < productions.length; index++) {
+                final var length = buffer.getInt();
+                if (length < 0) {
+                    continue;
+                }
+                final var head = names[buffer.getInt()];
+                final var body = new ArrayList<Term>(length);
+                for (int i = 0; i < length; i++) {
+                    final var term = buffer.getInt();
+                    body.add(term >= -1 ? TokenKinds.fromCode(term) : names[-2 - term]);
+                }
+                productions[index] = new Production(index, head, body);
+            }
+
+            // 缓存中的状态只带有编号, 它们仅用于通知观察者
+            final var statuses = new Status[stateCount];
+            for (int i = 0; i < stateCount; i++) {
+                statuses[i] = Status.create(i);
+            }
+
+            return new CompiledLRTable(
+                terminalCount, nonTerminalCount, initState, columnByCode, actions, gotos, heads, productions, statuses);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            // 缓存损坏时重新构造
+            return null;
+        }
+    }
+
+    /** 从映射的缓冲区中整块读出 count 个 int */
+    private static int[] readInts(ByteBuffer buffer, int count) {
+        final var result = new int[count];
+        buffer.asIntBuffer().get(result);
+        buffer.position(buffer.position() + count * Integer.BYTES);
+        return result;
+    }
+
+    /**
+     * 写入缓存. 先写入临时文件再替换, 避免其它进程读到写了一半的缓存
+     */
+    private static void write(Path path, byte[] digest, CompiledLRTable table) {
+        final var bytes = new ByteArrayOutputStream();
+        try (final var out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(digest);
+
+            final var stateCount = table.getStateCount();
+            out.writeInt(table.getTerminalCount());
+            out.writeInt(table.getNonTerminalCount());
+            out.writeInt(stateCount);
+            out.writeInt(table.getInitState());
+            writeInts(out, table.getColumnByCode(), true);
+            writeInts(out, table.getActions(), false);
+            writeInts(out, table.getGotos(), false);
+            writeInts(out, table.getHeads(), true);
+
+            // 收集所有产生式中出现的非终结符的名字
+            final var productions = table.getProductions();
+            final Map<String, Integer> names = new HashMap<>();
+            final var nameList = new ArrayList<String>();
+            for (final var production : productions) {
+                if (production == null) {
+                    continue;
+                }
+                final var terms = new ArrayList<Term>();
+                terms.add(production.head());
+                terms.addAll(production.body());
+                for (final var term : terms) {
+                    if (term instanceof NonTerminal && !names.containsKey(term.getTermName())) {
+                        names.put(term.getTermName(), nameList.size());
+                        nameList.add(term.getTermName());
+                    }
+                }
+            }
+            out.writeInt(nameList.size());
+            for (final var name : nameList) {
+                final var utf8 = name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+
+            for (final var production : productions) {
+                if (production == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                out.writeInt(production.body().size());
+                out.writeInt(names.get(production.head().getTermName()));
+                for (final var term : production.body()) {
+                    if (term instanceof TokenKind kind) {
+                        out.writeInt(kind.getCode());
+                    } else {
+                        out.writeInt(-2 - names.get(term.getTermName()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when serializing table", e);
+        }
+
+        try {
+            final var parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            final var temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception when writing table cache " + path, e);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, boolean withLength) throws IOException {
+        if (withLength) {
+            out.writeInt(values.length);
+        }
+        for (final var value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private TableCache() {
+    }
+}
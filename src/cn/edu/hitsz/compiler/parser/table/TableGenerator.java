@@ -4,45 +4,140 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * 根据语法文件构造 LR 分析表.
  * <br>
  * 此文件为非必需的框架文件, 用于提升整个编译器处理流程的统一性以及为学生提供 SLR(1) 分析表生成程序的参考. 正常情况下你不需要了解该文件.
+ * <br>
+ * 为了能处理具有成千上万条产生式的文法, 构造过程全部在整数上进行:
+ * 文法符号与产生式都被编号, 产生式按头部建立索引; 项目 A -> alpha . beta 被编码为一个整数 (见 {@link #itemOf(int, int)});
+ * 项目集是排好序的 int 数组, 可以直接比较与哈希. 每个状态的全部后继状态在构造规范项目集族时一次求出并记录在转移表中,
+ * 填表时直接查表, 不再重新计算 GO(I, X).
+ * <br>
+ * 除 SLR(1) 外, 还可以构造 LALR(1) 与规范 LR(1) 分析表, 见 {@link Mode}.
  */
 public class TableGenerator {
+    /**
+     * 分析表的构造方法
+     */
+    public enum Mode {
+        /** 在 LR(0) 自动机上按 FOLLOW 集合规约 */
+        SLR,
+        /**
+         * 在 LR(0) 自动机上按 DeRemer-Pennello 算法求出的向前看符号规约.
+         * 状态数与 LR(0) 相同, 而能处理的文法与规范 LR(1) 几乎一样多
+         */
+        LALR,
+        /** 构造规范 LR(1) 自动机, 每个项目都带有向前看符号. 能力最强, 但状态数可能远多于 LR(0) */
+        LR1
+    }
+
+    /**
+     * 构造 SLR(1) 分析表的生成器
+     */
     public TableGenerator() {
-        this.productions = GrammarInfo.getProductionsInOrder();
+        this(Mode.SLR);
+    }
+
+    /**
+     * @param mode 分析表的构造方法
+     */
+    public TableGenerator(Mode mode) {
+        this(mode, false);
+    }
+
+    /**
+     * @param mode               分析表的构造方法
+     * @param leftRecursiveLists 是否将右递归的列表按左递归构造, 见 {@link #rewriteRightRecursiveLists()}
+     */
+    public TableGenerator(Mode mode, boolean leftRecursiveLists) {
+        this(mode, leftRecursiveLists, GrammarInfo.getProductionsInOrder());
+    }
+
+    /**
+     * 为给定的文法而不是语法文件构造分析表, 用于检查各种构造方法
+     *
+     * @param mode               分析表的构造方法
+     * @param leftRecursiveLists 是否将右递归的列表按左递归构造
+     * @param productions        文法的产生式, 第一条须形如 S -> S'. 产生式体可以为空
+     */
+    public TableGenerator(Mode mode, boolean leftRecursiveLists, List<Production> productions) {
+        this.mode = mode;
+        this.leftRecursiveLists = leftRecursiveLists;
+        // 改写右递归的列表时会替换其中的产生式, 因此复制一份
+        this.productions = new ArrayList<>(productions);
         this.terminals = new HashSet<>(TokenKind.allAllowedTokenKinds().values());
-        this.nonTerminals = new HashSet<>(GrammarInfo.getNonTerminals().values());
+        this.nonTerminals = new HashSet<>();
+        for (final var production : productions) {
+            nonTerminals.add(production.head());
+            production.body().stream()
+                .filter(NonTerminal.class::isInstance)
+                .map(NonTerminal.class::cast)
+                .forEach(nonTerminals::add);
+        }
 
         if (productions.get(0).body().size() != 1) {
             throw new RuntimeException("The first production in grammar file must like S -> S'");
         }
+        if (leftRecursiveLists && mode == Mode.SLR) {
+            // SLR 的 FIRST 与 FOLLOW 直接读取产生式对象, 无法得知改写后的产生式体
+            throw new RuntimeException("Left-recursive lists require LALR or LR1 mode");
+        }
+
+        indexGrammar();
     }
 
     /**
      * 主体方法
      */
     public void run() {
-        calcFirst();
-        calcFollow();
+        if (mode == Mode.SLR) {
+            calcFirst();
+            calcFollow();
+        } else {
+            calcNullableAndFirst();
+        }
         constructDFA();
+        if (mode == Mode.LALR) {
+            calcLALRLookaheads();
+        }
         dumpItems();
         genTable();
     }
 
     /**
-     * 将该分析表生成的 LR(0) 规范集族打印到某个文件之中, 用于调试
+     * 与 run 相同, 但在线程池中并行构造规范项目集族. 构造出的分析表与 run 完全相同
+     *
+     * @param pool 执行构造任务的线程池
+     */
+    public void runParallel(ForkJoinPool pool) {
+        this.pool = pool;
+        try {
+            run();
+        } finally {
+            this.pool = null;
+        }
+    }
+
+    /**
+     * 将该分析表生成的规范集族打印到某个文件之中, 用于调试. 规范 LR(1) 的项目后附有其向前看符号
      */
     public void dumpItems() {
         final var lines = new ArrayList<String>();
         for (final var status : allStatusInIndexOrder) {
             lines.add("%d: ".formatted(status.index()));
-            for (final var item : including.get(status)) {
-                lines.add("    " + item);
+            for (final var item : stateItems.get(status.index())) {
+                if (mode == Mode.LR1) {
+                    lines.add("    [%s, %s]".formatted(itemToString(item / lookaheadCount), terminalOf(item % lookaheadCount)));
+                } else {
+                    lines.add("    " + itemToString(item));
+                }
             }
         }
 
@@ -56,6 +151,32 @@ public class TableGenerator {
         return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals));
     }
 
+    /**
+     * 按 LR(0) 项目集合并之后, 各状态中每个归约项目的向前看符号
+     * <br>
+     * 将规范 LR(1) 自动机中 LR(0) 项目集相同的状态合并, 得到的正是 LALR(1) 自动机及其向前看符号,
+     * 因此同一文法在 LALR 与 LR1 两种方法下的结果应当相同, 可以用来检查 DeRemer-Pennello 算法的实现. 需在 run 之后调用
+     *
+     * @return 从 "LR(0) 项目集 | 产生式" 到向前看符号的映射, 不含起始产生式
+     */
+    public Map<String, Set<TokenKind>> getMergedReductions() {
+        final var result = new HashMap<String, Set<TokenKind>>();
+        for (int state = 0; state < stateItems.size(); state++) {
+            final var items = stateItems.get(state);
+            final var core = Arrays.toString(Arrays.stream(items).map(item -> item / lookaheadCount).distinct().toArray());
+            for (final var encodedItem : items) {
+                final var item = encodedItem / lookaheadCount;
+                if (itemAfterDot[item] < 0 && itemProduction[item] != 0) {
+                    result.computeIfAbsent(core + " | " + productions.get(itemProduction[item]), key -> new HashSet<>())
+                        .addAll(lookaheadsOf(state, encodedItem));
+                }
+            }
+        }
+        return result;
+    }
+
+    private final Mode mode;
+    private final boolean leftRecursiveLists;
     private final List<Production> productions;
     private final Set<TokenKind> terminals;
     private final Set<NonTerminal> nonTerminals;
@@ -65,6 +186,197 @@ public class TableGenerator {
 
     private final Set<Term> visited = new HashSet<>();
 
+    //==================== 文法的整数表示 ==============================//
+
+    /** 全部文法符号, 非终结符在前, 终结符在后. 文法符号的编号即其在该列表中的下标 */
+    private final List<Term> symbols = new ArrayList<>();
+    private final Map<Term, Integer> symbolIds = new HashMap<>();
+    private int nonTerminalCount;
+    /** 终结符在向前看符号集合中的下标为其编号减去 nonTerminalCount */
+    private int terminalCount;
+    /**
+     * 每个 LR(0) 项目可以带有的向前看符号的种数. 规范 LR(1) 中项目 [item, a] 被编码为 item * lookaheadCount + a,
+     * 其余方法中项目不带向前看符号, 该值为 1
+     */
+    private int lookaheadCount;
+
+    /** 以各非终结符为头的产生式 (在 productions 中的下标), 按文法文件中的顺序排列 */
+    private int[][] productionsByHead;
+    /** 各非终结符出现在哪些产生式的体中, 按文法文件中的顺序排列, 每条产生式只记录一次 */
+    private List<List<Production>> occurrences;
+
+    /** 各产生式体中的文法符号编号 */
+    private int[][] bodies;
+    /** 各产生式的第一个项目 (点在最左侧) 的编号 */
+    private int[] firstItemOf;
+    /** 各项目所属的产生式, 点的位置, 以及点后面的文法符号 (点在末尾时为 -1) */
+    private int[] itemProduction;
+    private int[] itemDot;
+    private int[] itemAfterDot;
+
+    /**
+     * 为文法符号, 产生式与项目编号, 并建立产生式的索引
+     */
+    private void indexGrammar() {
+        // 文法符号的编号顺序决定了构造规范项目集族时尝试各符号的顺序, 进而决定了状态的编号
+        symbols.addAll(nonTerminals);
+        nonTerminalCount = symbols.size();
+        symbols.addAll(terminals);
+        terminalCount = symbols.size() - nonTerminalCount;
+        lookaheadCount = mode == Mode.LR1 ? terminalCount : 1;
+        for (int id = 0; id < symbols.size(); id++) {
+            symbolIds.put(symbols.get(id), id);
+        }
+
+        final var byHead = new ArrayList<List<Integer>>();
+        occurrences = new ArrayList<>();
+        for (int i = 0; i < nonTerminalCount; i++) {
+            byHead.add(new ArrayList<>());
+            occurrences.add(new ArrayList<>());
+        }
+
+        bodies = new int[productions.size()][];
+        firstItemOf = new int[productions.size()];
+        int itemCount = 0;
+        for (int p = 0; p < productions.size(); p++) {
+            final var production = productions.get(p);
+            byHead.get(symbolIdOf(production.head())).add(p);
+
+            final var body = production.body();
+            bodies[p] = new int[body.size()];
+            for (int i = 0; i < body.size(); i++) {
+                final var symbol = symbolIdOf(body.get(i));
+                bodies[p][i] = symbol;
+                if (symbol < nonTerminalCount) {
+                    final var list = occurrences.get(symbol);
+                    if (list.isEmpty() || list.get(list.size() - 1) != production) {
+                        list.add(production);
+                    }
+                }
+            }
+
+            firstItemOf[p] = itemCount;
+            itemCount += body.size() + 1;
+        }
+
+        productionsByHead = new int[nonTerminalCount][];
+        for (int i = 0; i < nonTerminalCount; i++) {
+            productionsByHead[i] = byHead.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        if (leftRecursiveLists) {
+            rewriteRightRecursiveLists();
+        }
+
+        itemProduction = new int[itemCount];
+        itemDot = new int[itemCount];
+        itemAfterDot = new int[itemCount];
+        for (int p = 0; p < productions.size(); p++) {
+            for (int dot = 0; dot <= bodies[p].length; dot++) {
+                final var item = itemOf(p, dot);
+                itemProduction[item] = p;
+                itemDot[item] = dot;
+                itemAfterDot[item] = dot < bodies[p].length ? bodies[p][dot] : -1;
+            }
+        }
+    }
+
+    /**
+     * 将右递归的列表 L -> alpha L | alpha 按左递归的 L -> L alpha | alpha 构造
+     * <br>
+     * 对于右递归的列表, 直到读完最后一个元素才能开始规约 L, 在此之前所有元素的状态都留在状态栈上, 各观察者的栈也随之增长.
+     * 按左递归构造时每读完一个元素就立即规约一次, 栈的深度不再随列表长度增长.
+     * <br>
+     * 改写后的 L -> L alpha 是一条新的产生式, 编号接在文法中最大的编号之后, 分析表中的规约动作使用的也是它,
+     * 因此观察者收到的正是实际规约的产生式. 按编号处理产生式的观察者不认识这些新编号, 只适用于对未知产生式
+     * 弹出若干个值再压入占位符的观察者.
+     */
+    private void rewriteRightRecursiveLists() {
+        int nextIndex = productions.stream().mapToInt(Production::index).max().orElse(0) + 1;
+        for (int i = 0; i < nonTerminalCount; i++) {
+            final var head = i;
+            for (final var recursive : productionsByHead[head]) {
+                final var body = bodies[recursive];
+                if (body.length < 2 || body[body.length - 1] != head) {
+                    continue;
+                }
+                final var element = Arrays.copyOf(body, body.length - 1);
+                final var hasBase = Arrays.stream(productionsByHead[head]).anyMatch(p -> Arrays.equals(bodies[p], element));
+                final var selfReferencing = Arrays.stream(element).anyMatch(symbol -> symbol == head);
+                if (hasBase && !selfReferencing) {
+                    // L -> alpha L 改写为 L -> L alpha
+                    bodies[recursive][0] = head;
+                    System.arraycopy(element, 0, bodies[recursive], 1, element.length);
+                    final var original = productions.get(recursive);
+                    final var rewritten = Arrays.stream(bodies[recursive]).mapToObj(symbols::get).toList();
+                    productions.set(recursive, new Production(nextIndex++, original.head(), rewritten));
+                }
+            }
+        }
+    }
+
+    private int symbolIdOf(Term term) {
+        final var id = symbolIds.get(term);
+        if (id == null) {
+            throw new RuntimeException("Unknown term in grammar: " + term);
+        }
+        return id;
+    }
+
+    /**
+     * 项目的编号: 同一产生式的各项目编号连续, 点每右移一位编号加一
+     *
+     * @param production 产生式在 productions 中的下标
+     * @param dot        点的位置
+     * @return 项目 production 在点位于 dot 时的编号
+     */
+    private int itemOf(int production, int dot) {
+        return firstItemOf[production] + dot;
+    }
+
+    /**
+     * @param terminal 终结符在向前看符号集合中的下标
+     * @return 对应的终结符
+     */
+    private TokenKind terminalOf(int terminal) {
+        return (TokenKind) symbols.get(nonTerminalCount + terminal);
+    }
+
+    /**
+     * @return EOF 在向前看符号集合中的下标
+     */
+    private int eofTerminal() {
+        return symbolIdOf(TokenKind.eof()) - nonTerminalCount;
+    }
+
+    /**
+     * 对于 A -> B . C, 输出 "A ->  B . C"; 对于 A -> B C ., 输出 "A ->  B C ."
+     */
+    private String itemToString(int item) {
+        final var production = itemProduction[item];
+        final var dot = itemDot[item];
+        final var builder = new StringBuilder();
+
+        builder.append(productions.get(production).head());
+        builder.append(" -> ");
+
+        // 使用整数形式的产生式体, 其中的列表可能已改写为左递归
+        final var body = bodies[production];
+        for (int i = 0; i < body.length; i++) {
+            if (i == dot) {
+                builder.append(" .");
+            }
+            builder.append(" ").append(symbols.get(body[i]));
+        }
+
+        if (dot == body.length) {
+            builder.append(" .");
+        }
+
+        return builder.toString();
+    }
+
+    //==================== FIRST 与 FOLLOW ==============================//
+
     /**
      * 计算所有符号的 first 集合 <br>
      * 终结符的 first 就是它自身, 非终结符的 first 则递归计算
@@ -94,17 +406,15 @@ public class TableGenerator {
         }
 
         final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
-            if (nonTerminal == production.head()) {
-                // 在文法中寻找以该非终结符为头的产生式
-                final var firstSymbol = production.body().get(0);
-                // 记录已经在栈中的递归过的非终结符, 防止直接或间接的左递归导致程序死循环
-                if (!visited.contains(firstSymbol)) {
-                    // 随后递归查找该产生式体的第一个文法符号的 first 集合
-                    // 它的 first 集合也是该非终结符的 first 集合
-                    visited.add(firstSymbol);
-                    result.addAll(calcFirst(firstSymbol));
-                }
+        // 在文法中寻找以该非终结符为头的产生式
+        for (final var p : productionsByHead[symbolIdOf(nonTerminal)]) {
+            final var firstSymbol = productions.get(p).body().get(0);
+            // 记录已经在栈中的递归过的非终结符, 防止直接或间接的左递归导致程序死循环
+            if (!visited.contains(firstSymbol)) {
+                // 随后递归查找该产生式体的第一个文法符号的 first 集合
+                // 它的 first 集合也是该非终结符的 first 集合
+                visited.add(firstSymbol);
+                result.addAll(calcFirst(firstSymbol));
             }
         }
 
@@ -142,7 +452,8 @@ public class TableGenerator {
         }
 
         final var result = new LinkedHashSet<TokenKind>();
-        for (final var production : productions) {
+        // 只需查看该非终结符出现过的产生式
+        for (final var production : occurrences.get(symbolIdOf(nonTerminal))) {
             final var body = production.body();
 
             // 对该非终结符在每条产生式体中的可能出现, 我们都要将紧跟在该出现后面的项的 first 加入其 follow 集合
@@ -177,222 +488,349 @@ public class TableGenerator {
         return result;
     }
 
+    //==================== LR(0) 规范项目集族 ==============================//
+
     /**
-     * 表示一个项目
-     * <br>
-     * 对于 A -> B . C, 其 production 为 A -> B C, dot 为 1 (其下一个项 C 的索引) <br>
-     * 对于 A -> B C ., 其 production 为 A -> B C, dot 为 2 (其产生式体的项数量) <br>
-     *
-     * @param production 产生式
-     * @param dot        目前解析到的位置
+     * 项目集, 内部为排好序的项目编号数组
      */
-    private record Item(Production production, int dot) {
-        /**
-         * @return 点的位置是否在产生式的末尾
-         */
-        public boolean isDotAtEnd() {
-            return production.body().size() == dot;
+    private record ItemSet(int[] items, int hash) {
+        static ItemSet of(int[] sortedItems) {
+            return new ItemSet(sortedItems, Arrays.hashCode(sortedItems));
         }
 
-        /**
-         * @return 获得点后面的文法符号; 若点的位置在末尾则返回空
-         */
-        public Optional<Term> getAfterDot() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(production.body().get(dot));
-            }
-        }
-
-        /**
-         * @return 获得当前项目的后继项; 若点的位置在末尾则返回空
-         */
-        public Optional<Item> getNextItem() {
-            if (isDotAtEnd()) {
-                return Optional.empty();
-            } else {
-                return Optional.of(new Item(production, dot + 1));
-            }
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ItemSet other && other.hash == hash && Arrays.equals(other.items, items);
         }
 
         @Override
-        public String toString() {
-            final var builder = new StringBuilder();
-
-            builder.append(production.head());
-            builder.append(" -> ");
+        public int hashCode() {
+            return hash;
+        }
+    }
 
-            final var body = production.body();
-            for (int i = 0; i < body.size(); i++) {
-                if (i == dot) {
-                    builder.append(" .");
-                }
-                builder.append(" ").append(body.get(i));
-            }
+    private final List<Status> allStatusInIndexOrder = new ArrayList<>();
+    /** 各状态的项目集 */
+    private final List<int[]> stateItems = new ArrayList<>();
+    /** 各状态的转移: 按文法符号编号递增排列的 (文法符号, 目标状态) 序列 */
+    private final List<int[]> transitions = new ArrayList<>();
 
-            if (dot == body.size()) {
-                builder.append(" .");
-            }
+    /** 并行构造规范项目集族所用的线程池, 为 null 时串行构造 */
+    private ForkJoinPool pool = null;
 
-            return builder.toString();
-        }
+    /**
+     * 求闭包与后继项目集时使用的工作区, 各线程分别使用自己的工作区
+     */
+    private final class Workspace {
+        /** 本轮求闭包中已加入的项目与已展开的非终结符 */
+        final int[] itemStamps = new int[itemProduction.length * lookaheadCount];
+        final int[] expandedStamps = new int[nonTerminalCount];
+        int stamp = 0;
+        /** 按文法符号分组的后继项目集的核, 以及每组的大小 */
+        final int[][] kernels = new int[symbols.size()][];
+        final int[] kernelSizes = new int[symbols.size()];
+        final BitSet lookaheads = new BitSet(terminalCount);
     }
 
-    private final Map<Set<Item>, Status> belongTo = new HashMap<>();
-    private final Map<Status, Set<Item>> including = new HashMap<>();
-    private final List<Status> allStatusInIndexOrder = new ArrayList<>();
+    /**
+     * 一个状态的全部后继: 按文法符号编号递增排列的文法符号, 已有的目标状态 (尚未编号时为 -1), 以及尚未编号的目标项目集
+     */
+    private record Successors(int[] symbols, int[] targets, ItemSet[] newSets) {
+    }
 
     /**
      * 构造出所有状态并维护状态与项集之间的对应关系
      */
     private void constructDFA() {
-        final var argumentProduction = productions.get(0);
-        final var initItem = new Item(argumentProduction, 0);
-        final var collections = constructCanonicalLRCollection(initItem);
-
-        for (int idx = 0; idx < collections.size(); idx++) {
-            final var status = Status.create(idx);
-            allStatusInIndexOrder.add(status);
+        // 规范 LR(1) 的起始项目为 [S -> . S', $]
+        final var initItem = mode == Mode.LR1 ? itemOf(0, 0) * lookaheadCount + eofTerminal() : itemOf(0, 0);
+        constructCanonicalLRCollection(initItem);
 
-            final var items = collections.get(idx);
-            including.put(status, items);
-            belongTo.put(items, status);
+        for (int idx = 0; idx < stateItems.size(); idx++) {
+            allStatusInIndexOrder.add(Status.create(idx));
         }
     }
 
     /**
-     * @param head 头部符号
-     * @return 返回一个流, 其中的元素都是以 head 为头的产生式
+     * 构造项目集核 {@code kernel} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     *
+     * @param kernel    项集 I 的核, 其中不能有重复的项目
+     * @param size      核中的项目数
+     * @param workspace 当前线程的工作区
+     * @return 闭包, 按项目编号排序
      */
-    private Stream<Production> getProductionsByHead(Term head) {
-        return productions.stream().filter(production -> production.head().equals(head));
+    private int[] constructClosure(int[] kernel, int size, Workspace workspace) {
+        if (mode == Mode.LR1) {
+            return constructClosureLR1(kernel, size, workspace);
+        }
+
+        final var itemStamps = workspace.itemStamps;
+        final var expandedStamps = workspace.expandedStamps;
+        final var stamp = ++workspace.stamp;
+        // 采用 BFS 的方法, result 同时也是 BFS 的队列, [0, head) 为已展开的项目
+        var result = Arrays.copyOf(kernel, Math.max(size * 2, 8));
+        int count = size;
+        for (int i = 0; i < size; i++) {
+            itemStamps[kernel[i]] = stamp;
+        }
+
+        for (int head = 0; head < count; head++) {
+            // 获得当前项中点后面的符号, 只有非终结符需要展开, 且每个非终结符只需展开一次
+            final var afterDot = itemAfterDot[result[head]];
+            if (afterDot < 0 || afterDot >= nonTerminalCount || expandedStamps[afterDot] == stamp) {
+                continue;
+            }
+            expandedStamps[afterDot] = stamp;
+
+            // 随后查找以该符号作为头部的产生式, 构造点在对应产生式开头的新项
+            for (final var p : productionsByHead[afterDot]) {
+                final var item = itemOf(p, 0);
+                if (itemStamps[item] != stamp) {
+                    itemStamps[item] = stamp;
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, count * 2);
+                    }
+                    result[count++] = item;
+                }
+            }
+        }
+
+        final var closure = Arrays.copyOf(result, count);
+        Arrays.sort(closure);
+        return closure;
     }
 
     /**
-     * 构造项集 {@code sourceItem} 的闭包, 相当于理论课中的 CLOSURE(I) 函数
+     * 构造规范 LR(1) 项目集核的闭包
+     * <br>
+     * 对于 [A -> alpha . B beta, a], 对每个 B -> gamma 与 FIRST(beta a) 中的每个 b, 加入 [B -> . gamma, b]
      *
-     * @param sourceItem 项集 I
-     * @return 闭包
-     */
-    private Set<Item> constructClosure(Set<Item> sourceItem) {
-        // 采用 BFS 的方法来避免每次都检测集合的更改
-        final var result = new LinkedHashSet<>(sourceItem);
-        // 已经找到, 但是还未完全探索其能展开的项的项
-        // 类似于 BFS 的队列或者是 mark-and-sweep GC 算法里的灰色列表
-        final var unexpanded = new ArrayDeque<>(sourceItem);
-
-        while (!unexpanded.isEmpty()) {
-            final var top = unexpanded.pollFirst();
-            // 获得当前项中点后面的符号
-            top.getAfterDot().ifPresent(afterDot ->
-                // 随后查找以该符号作为头部的产生式
-                getProductionsByHead(afterDot)
-                    // 构造点在对应产生式开头的新项
-                    .map(production -> new Item(production, 0))
-                    // 对于不在 result 中的新项
-                    .filter(item -> !result.contains(item))
-                    // 加入队列并加入结果中
-                    .peek(unexpanded::add)
-                    .forEach(result::add));
+     * @param kernel    项集 I 的核, 其中不能有重复的项目
+     * @param size      核中的项目数
+     * @param workspace 当前线程的工作区
+     * @return 闭包, 按项目编号排序
+     */
+    private int[] constructClosureLR1(int[] kernel, int size, Workspace workspace) {
+        final var itemStamps = workspace.itemStamps;
+        final var stamp = ++workspace.stamp;
+        var result = Arrays.copyOf(kernel, Math.max(size * 2, 8));
+        int count = size;
+        for (int i = 0; i < size; i++) {
+            itemStamps[kernel[i]] = stamp;
         }
 
-        return result;
+        final var lookaheads = workspace.lookaheads;
+        for (int head = 0; head < count; head++) {
+            final var item = result[head] / lookaheadCount;
+            final var afterDot = itemAfterDot[item];
+            if (afterDot < 0 || afterDot >= nonTerminalCount) {
+                continue;
+            }
+
+            // FIRST(beta a)
+            lookaheads.clear();
+            if (firstOfSequence(bodies[itemProduction[item]], itemDot[item] + 1, lookaheads)) {
+                lookaheads.set(result[head] % lookaheadCount);
+            }
+
+            for (final var p : productionsByHead[afterDot]) {
+                final var base = itemOf(p, 0) * lookaheadCount;
+                for (int b = lookaheads.nextSetBit(0); b >= 0; b = lookaheads.nextSetBit(b + 1)) {
+                    final var newItem = base + b;
+                    if (itemStamps[newItem] != stamp) {
+                        itemStamps[newItem] = stamp;
+                        if (count == result.length) {
+                            result = Arrays.copyOf(result, count * 2);
+                        }
+                        result[count++] = newItem;
+                    }
+                }
+            }
+        }
+
+        final var closure = Arrays.copyOf(result, count);
+        Arrays.sort(closure);
+        return closure;
     }
 
     /**
-     * 相当于理论课中的 GO(I, X) 函数 (转移函数)
+     * 构造规范项目集族, 同时求出每个状态在每个文法符号上的转移, 相当于对每个状态求出所有非空的 GO(I, X)
+     * <br>
+     * SLR(1) 与 LALR(1) 构造的是 LR(0) 项目集族, 规范 LR(1) 则构造带有向前看符号的 LR(1) 项目集族
+     * <br>
+     * 搜索按层进行: 先求出当前一层所有状态的后继项目集, 这一步中各状态互不依赖, 设置了线程池时并行执行;
+     * 然后按状态编号与文法符号的顺序为新出现的项目集编号. 这与逐个状态进行 BFS 得到的编号完全相同, 因此串行与并行构造出的分析表一致.
      *
-     * @param items 当前项集 I
-     * @param term  文法符号 X
-     * @return I 关于 X 的后继项目集
+     * @param initItem 起始项目 S -> . S'
      */
-    private Set<Item> constructGoto(Set<Item> items, Term term) {
-        final var kernelForGoto = items.stream()
-            // 先筛选出 I 中所有点后面是 term 的项
-            .filter(item -> item.getAfterDot().map(term::equals).orElse(false))
-            // 然后分别求出每一个项的后继项
-            // 这个项集就是后继项目集的核
-            .map(Item::getNextItem).flatMap(Optional::stream)
-            .collect(Collectors.toSet());
+    private void constructCanonicalLRCollection(int initItem) {
+        // 求后继时各线程只会读取 stateOf, 编号时才写入
+        final Map<ItemSet, Integer> stateOf = new ConcurrentHashMap<>();
+        final var workspaces = ThreadLocal.withInitial(Workspace::new);
+        addState(stateOf, ItemSet.of(constructClosure(new int[]{initItem}, 1, workspaces.get())));
+
+        // 同样以 BFS 形式搜索, 状态编号即为 BFS 的队列, [levelBegin, levelEnd) 为当前一层
+        int levelBegin = 0;
+        while (levelBegin < stateItems.size()) {
+            final var begin = levelBegin;
+            final var end = stateItems.size();
+            final var successors = new Successors[end - begin];
+            // 本层中新出现的项目集, 不同状态的相同后继共用同一个对象
+            final ConcurrentMap<ItemSet, ItemSet> newSets = new ConcurrentHashMap<>();
+            final IntConsumer expand = state ->
+                successors[state - begin] = successorsOf(stateItems.get(state), workspaces.get(), stateOf, newSets);
+
+            if (pool == null) {
+                for (int state = begin; state < end; state++) {
+                    expand.accept(state);
+                }
+            } else {
+                pool.submit(() -> IntStream.range(begin, end).parallel().forEach(expand)).join();
+            }
 
-        // 随后从后继项目集的核中构造闭包即可得到后继项目集
-        return constructClosure(kernelForGoto);
+            // 按顺序编号, 新的项目集加入队列末尾
+            for (final var successor : successors) {
+                final var transition = new int[successor.symbols().length * 2];
+                for (int i = 0; i < successor.symbols().length; i++) {
+                    var target = successor.targets()[i];
+                    if (target < 0) {
+                        final var to = successor.newSets()[i];
+                        final var known = stateOf.get(to);
+                        target = known != null ? known : addState(stateOf, to);
+                    }
+                    transition[i * 2] = successor.symbols()[i];
+                    transition[i * 2 + 1] = target;
+                }
+                transitions.add(transition);
+            }
+            levelBegin = end;
+        }
     }
 
     /**
-     * 构造 LR(0) 规范项目集族
+     * 求出项目集 items 的全部后继项目集
      *
-     * @param initItem 起始项目 S -> . S'
-     * @return 规范项目集族
-     */
-    private List<Set<Item>> constructCanonicalLRCollection(Item initItem) {
-        // 先收集所有的文法符号备用
-        final var terms = new LinkedHashSet<Term>();
-        terms.addAll(nonTerminals);
-        terms.addAll(terminals);
-
-        // 构造初始项目集族
-        final var initClosure = constructClosure(Set.of(initItem));
-
-        // 同样以 BFS 形式搜索
-        final var result = new LinkedHashSet<>(Set.of(initClosure));
-        final var unexpanded = new ArrayDeque<>(Set.of(initClosure));
-
-        while (!unexpanded.isEmpty()) {
-            final var items = unexpanded.pollFirst();
-
-            // 对于每个未被探索的集族
-            for (final var term : terms) {
-                // 尝试对每一个文法符号都求一个后继项目集
-                final var to = constructGoto(items, term);
-                // 如果还没被加入到 result 中
-                if (!to.isEmpty() && !result.contains(to)) {
-                    // 就加入 result 和待探索列表中
-                    result.add(to);
-                    unexpanded.addLast(to);
-                }
+     * @param items     项目集
+     * @param workspace 当前线程的工作区
+     * @param stateOf   已编号的项目集, 只读
+     * @param newSets   本层中新出现的项目集
+     * @return 按文法符号排列的全部后继
+     */
+    private Successors successorsOf(int[] items, Workspace workspace,
+                                    Map<ItemSet, Integer> stateOf, ConcurrentMap<ItemSet, ItemSet> newSets) {
+        final var kernels = workspace.kernels;
+        final var kernelSizes = workspace.kernelSizes;
+
+        // 先将 I 中的每个项按点后面的符号分组, 并分别求出每一个项的后继项, 得到各个后继项目集的核
+        int groups = 0;
+        for (final var item : items) {
+            final var symbol = itemAfterDot[item / lookaheadCount];
+            if (symbol < 0) {
+                continue;
+            }
+            if (kernels[symbol] == null || kernelSizes[symbol] == kernels[symbol].length) {
+                kernels[symbol] = kernels[symbol] == null
+                    ? new int[4] : Arrays.copyOf(kernels[symbol], kernelSizes[symbol] * 2);
             }
+            if (kernelSizes[symbol] == 0) {
+                groups++;
+            }
+            // 后继项的点右移一位, 向前看符号不变
+            kernels[symbol][kernelSizes[symbol]++] = item + lookaheadCount;
         }
 
-        return new ArrayList<>(result);
+        // 按文法符号的顺序依次求后继项目集
+        final var symbolsOfGroups = new int[groups];
+        final var targets = new int[groups];
+        final var sets = new ItemSet[groups];
+        int group = 0;
+        for (int symbol = 0; symbol < symbols.size() && group < groups; symbol++) {
+            if (kernelSizes[symbol] == 0) {
+                continue;
+            }
+            final var to = ItemSet.of(constructClosure(kernels[symbol], kernelSizes[symbol], workspace));
+            kernelSizes[symbol] = 0;
+
+            symbolsOfGroups[group] = symbol;
+            final var known = stateOf.get(to);
+            if (known != null) {
+                targets[group] = known;
+            } else {
+                targets[group] = -1;
+                final var shared = newSets.putIfAbsent(to, to);
+                sets[group] = shared != null ? shared : to;
+            }
+            group++;
+        }
+        return new Successors(symbolsOfGroups, targets, sets);
+    }
+
+    private int addState(Map<ItemSet, Integer> stateOf, ItemSet items) {
+        final var index = stateItems.size();
+        stateOf.put(items, index);
+        stateItems.add(items.items());
+        return index;
+    }
+
+    /**
+     * @return 状态 state 在文法符号 symbol 上的转移目标, 不存在时为 -1
+     */
+    private int transitionOf(int state, int symbol) {
+        final var transition = transitions.get(state);
+        // 转移按文法符号排列, 二分查找即可
+        int low = 0;
+        int high = transition.length / 2 - 1;
+        while (low <= high) {
+            final var mid = (low + high) >>> 1;
+            final var midSymbol = transition[mid * 2];
+            if (midSymbol < symbol) {
+                low = mid + 1;
+            } else if (midSymbol > symbol) {
+                high = mid - 1;
+            } else {
+                return transition[mid * 2 + 1];
+            }
+        }
+        return -1;
     }
 
     /**
      * 构造 LR 分析表 (填充各个 status 中的 action 与 goto)
      */
     private void genTable() {
+        final var argumentProduction = productions.get(0);
+
         // 依索引顺序对每个状态的每个项目
         for (final var status : allStatusInIndexOrder) {
-            for (final var item : including.get(status)) {
-                final var afterDotOpt = item.getAfterDot();
+            for (final var encodedItem : stateItems.get(status.index())) {
+                final var item = encodedItem / lookaheadCount;
+                final var symbol = itemAfterDot[item];
 
                 // 根据项目的点的位置和点后面跟着的文法符号进行分类
-                if (afterDotOpt.isEmpty()) {
-                    final var argumentProduction = productions.get(0);
-                    if (item.production().equals(argumentProduction)) {
+                if (symbol < 0) {
+                    final var production = productions.get(itemProduction[item]);
+                    if (production.equals(argumentProduction)) {
                         // S -> S' .
                         // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
                         status.setAction(TokenKind.eof(), Action.accept());
                     } else {
                         // A -> alpha .
-                        // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
-                        final var production = item.production();
-                        final var head = production.head();
-                        for (final var a : follow.get(head)) {
+                        // 如果项目代表某个产生式的末尾, 那么再遇到该项目的向前看符号时都应该规约 A
+                        for (final var a : lookaheadsOf(status.index(), encodedItem)) {
                             status.setAction(a, Action.reduce(production));
                         }
                     }
 
                 } else {
-                    final var symbol = afterDotOpt.get();
-                    final var next = belongTo.get(constructGoto(including.get(status), symbol));
+                    // GO(I, X) 已在构造规范项目集族时求出
+                    final var next = allStatusInIndexOrder.get(transitionOf(status.index(), symbol));
+                    final var term = symbols.get(symbol);
 
-                    if (symbol instanceof TokenKind tokenKind) {
+                    if (term instanceof TokenKind tokenKind) {
                         // A -> alpha . a beta
                         // 如果项目代表某个产生式的中间, 并且接着一个终结符的情况, 我们就移入该终结符
                         status.setAction(tokenKind, Action.shift(next));
-                    } else if (symbol instanceof NonTerminal nonTerminal) {
+                    } else if (term instanceof NonTerminal nonTerminal) {
                         // A -> alpha . B beta
                         // 如果项目代表某个产生式的中间, 并且接着一个非终结符的情况,
                         // 我们就转移到 B 解析之后的状态中去 (即 GO(I, B) 对应的状态)
@@ -405,6 +843,288 @@ public class TableGenerator {
         }
     }
 
+    /**
+     * 获得归约项目的向前看符号
+     * <br>
+     * SLR(1) 为产生式头的 FOLLOW 集合; LALR(1) 为 DeRemer-Pennello 算法求出的 LA(q, A -> alpha);
+     * 规范 LR(1) 为项目本身带有的向前看符号
+     *
+     * @param state       项目所在的状态
+     * @param encodedItem 项目的编码
+     * @return 应当规约的终结符
+     */
+    private Collection<TokenKind> lookaheadsOf(int state, int encodedItem) {
+        final var production = itemProduction[encodedItem / lookaheadCount];
+        return switch (mode) {
+            case SLR -> follow.get(productions.get(production).head());
+            case LALR -> {
+                final var bits = lalrLookaheads.get(reductionKey(state, production));
+                final var result = new ArrayList<TokenKind>();
+                if (bits != null) {
+                    bits.stream().mapToObj(this::terminalOf).forEach(result::add);
+                }
+                yield result;
+            }
+            case LR1 -> List.of(terminalOf(encodedItem % lookaheadCount));
+        };
+    }
+
+    //==================== LR(1) 与 LALR(1) 所需的 FIRST 集合 ==============================//
+
+    /** 可以推导出空串的非终结符 */
+    private boolean[] nullable;
+    /** 各非终结符的 FIRST 集合, 元素为终结符在向前看符号集合中的下标 */
+    private BitSet[] firstSets;
+
+    /**
+     * 以不动点迭代求出 nullable 与 FIRST
+     * <br>
+     * 与 SLR(1) 所用的递归算法不同, 这里按定义计算, 可以正确处理可空的非终结符
+     */
+    private void calcNullableAndFirst() {
+        nullable = new boolean[nonTerminalCount];
+        firstSets = new BitSet[nonTerminalCount];
+        for (int i = 0; i < nonTerminalCount; i++) {
+            firstSets[i] = new BitSet(terminalCount);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < productions.size(); p++) {
+                final var head = symbolIdOf(productions.get(p).head());
+                final var before = firstSets[head].cardinality();
+                final var bodyNullable = firstOfSequence(bodies[p], 0, firstSets[head]);
+                if (bodyNullable && !nullable[head]) {
+                    nullable[head] = true;
+                    changed = true;
+                }
+                if (firstSets[head].cardinality() != before) {
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 将 FIRST(body[from..]) 加入 result 中
+     *
+     * @return body[from..] 是否可以推导出空串
+     */
+    private boolean firstOfSequence(int[] body, int from, BitSet result) {
+        for (int i = from; i < body.length; i++) {
+            final var symbol = body[i];
+            if (symbol >= nonTerminalCount) {
+                result.set(symbol - nonTerminalCount);
+                return false;
+            }
+            result.or(firstSets[symbol]);
+            if (!nullable[symbol]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //==================== LALR(1): DeRemer-Pennello 算法 ==============================//
+
+    /** 各状态的第一个非终结符转移的编号. 非终结符的编号小于终结符, 所以状态的非终结符转移总排在其转移序列的最前面 */
+    private int[] firstGotoOf;
+    /** LA(q, A -> alpha), 键为 {@link #reductionKey(int, int)} */
+    private final Map<Long, BitSet> lalrLookaheads = new HashMap<>();
+
+    private static long reductionKey(int state, int production) {
+        return ((long) state << 32) | production;
+    }
+
+    /**
+     * 按 DeRemer 与 Pennello 的算法在 LR(0) 自动机上求出每个归约项目的向前看符号
+     * <br>
+     * 对每个非终结符转移 (p, A):
+     * <ul>
+     *     <li>DR(p, A) 为 GOTO(p, A) 上所有终结符转移的符号</li>
+     *     <li>(p, A) reads (r, C) 当且仅当 r = GOTO(p, A), C 可空且 r 上有 C 转移</li>
+     *     <li>Read(p, A) 为 DR 沿 reads 关系的闭包</li>
+     *     <li>(p, A) includes (p', B) 当且仅当有 B -> beta A gamma, gamma 可空且 p' 经 beta 到达 p</li>
+     *     <li>Follow(p, A) 为 Read 沿 includes 关系的闭包</li>
+     * </ul>
+     * 若 p 经 alpha 到达 q, 则 (q, A -> alpha) lookback (p, A), LA(q, A -> alpha) 为所有这样的 Follow(p, A) 的并.
+     * 两次闭包都使用求强连通分量的 digraph 算法, 每条边只访问一次.
+     */
+    private void calcLALRLookaheads() {
+        // 为所有非终结符转移编号
+        final var stateCount = stateItems.size();
+        firstGotoOf = new int[stateCount + 1];
+        for (int state = 0; state < stateCount; state++) {
+            final var transition = transitions.get(state);
+            int gotoCount = 0;
+            while (gotoCount * 2 < transition.length && transition[gotoCount * 2] < nonTerminalCount) {
+                gotoCount++;
+            }
+            firstGotoOf[state + 1] = firstGotoOf[state] + gotoCount;
+        }
+        final var gotoCount = firstGotoOf[stateCount];
+        final var gotoState = new int[gotoCount];
+        final var gotoSymbol = new int[gotoCount];
+        for (int state = 0; state < stateCount; state++) {
+            final var transition = transitions.get(state);
+            for (int id = firstGotoOf[state]; id < firstGotoOf[state + 1]; id++) {
+                gotoState[id] = state;
+                gotoSymbol[id] = transition[(id - firstGotoOf[state]) * 2];
+            }
+        }
+
+        // DR 与 reads
+        final var sets = new BitSet[gotoCount];
+        final var reads = new int[gotoCount][];
+        final var eof = eofTerminal();
+        for (int id = 0; id < gotoCount; id++) {
+            final var target = transitionOf(gotoState[id], gotoSymbol[id]);
+            final var transition = transitions.get(target);
+            sets[id] = new BitSet(terminalCount);
+            final var read = new ArrayList<Integer>();
+            for (int i = 0; i < transition.length; i += 2) {
+                final var symbol = transition[i];
+                if (symbol >= nonTerminalCount) {
+                    sets[id].set(symbol - nonTerminalCount);
+                } else if (nullable[symbol]) {
+                    read.add(gotoIdOf(target, symbol));
+                }
+            }
+            reads[id] = read.stream().mapToInt(Integer::intValue).toArray();
+        }
+        // 起始产生式 S -> S' 隐含了末尾的 EOF
+        final var startGoto = gotoIdOf(0, bodies[0][0]);
+        if (startGoto >= 0) {
+            sets[startGoto].set(eof);
+        }
+        digraph(reads, sets);
+
+        // includes 与 lookback: 从每个非终结符转移 (p', B) 出发, 沿 B 的每个产生式走一遍
+        final var includes = new ArrayList<List<Integer>>();
+        for (int id = 0; id < gotoCount; id++) {
+            includes.add(new ArrayList<>());
+        }
+        final var lookbacks = new HashMap<Long, List<Integer>>();
+        for (int id = 0; id < gotoCount; id++) {
+            for (final var p : productionsByHead[gotoSymbol[id]]) {
+                final var body = bodies[p];
+                int state = gotoState[id];
+                for (int i = 0; i < body.length; i++) {
+                    final var symbol = body[i];
+                    if (symbol < nonTerminalCount && suffixNullable(body, i + 1)) {
+                        includes.get(gotoIdOf(state, symbol)).add(id);
+                    }
+                    state = transitionOf(state, symbol);
+                }
+                lookbacks.computeIfAbsent(reductionKey(state, p), key -> new ArrayList<>()).add(id);
+            }
+        }
+
+        final var includesArray = new int[gotoCount][];
+        for (int id = 0; id < gotoCount; id++) {
+            includesArray[id] = includes.get(id).stream().mapToInt(Integer::intValue).toArray();
+        }
+        digraph(includesArray, sets);
+
+        lookbacks.forEach((key, ids) -> {
+            final var lookahead = new BitSet(terminalCount);
+            ids.forEach(id -> lookahead.or(sets[id]));
+            lalrLookaheads.put(key, lookahead);
+        });
+    }
+
+    private boolean suffixNullable(int[] body, int from) {
+        for (int i = from; i < body.length; i++) {
+            if (body[i] >= nonTerminalCount || !nullable[body[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 非终结符转移 (state, symbol) 的编号, 不存在时为 -1
+     */
+    private int gotoIdOf(int state, int symbol) {
+        final var transition = transitions.get(state);
+        for (int i = 0, id = firstGotoOf[state]; id < firstGotoOf[state + 1]; i += 2, id++) {
+            if (transition[i] == symbol) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * DeRemer-Pennello 的 digraph 算法: 对每个 x, 令 sets[x] 为所有沿 relation 可达的 y 的 sets[y] 的并
+     * <br>
+     * 同一强连通分量中的元素结果相同, 在找到分量的根时一并赋值. 各元素各自得到一份拷贝而不共享同一个 BitSet,
+     * 因为 sets 在 reads 之后还要沿 includes 再求一次闭包, 共享会让对一个元素的修改波及同一 reads 分量中的其它元素.
+     * 为了处理很长的关系链, 这里用显式的栈代替递归
+     */
+    private static void digraph(int[][] relation, BitSet[] sets) {
+        final var n = relation.length;
+        final var depthOf = new int[n];
+        final var stack = new int[n];
+        int stackSize = 0;
+        // 模拟递归调用的栈: 当前访问的元素, 下一条要访问的边, 进入时的深度
+        final var callNode = new int[n];
+        final var callEdge = new int[n];
+        final var callDepth = new int[n];
+        int callSize = 0;
+
+        for (int start = 0; start < n; start++) {
+            if (depthOf[start] != 0) {
+                continue;
+            }
+            stack[stackSize++] = start;
+            depthOf[start] = stackSize;
+            callNode[callSize] = start;
+            callEdge[callSize] = 0;
+            callDepth[callSize++] = stackSize;
+
+            while (callSize > 0) {
+                final var x = callNode[callSize - 1];
+                final var edge = callEdge[callSize - 1];
+                if (edge < relation[x].length) {
+                    callEdge[callSize - 1]++;
+                    final var y = relation[x][edge];
+                    if (depthOf[y] == 0) {
+                        stack[stackSize++] = y;
+                        depthOf[y] = stackSize;
+                        callNode[callSize] = y;
+                        callEdge[callSize] = 0;
+                        callDepth[callSize++] = stackSize;
+                    } else {
+                        depthOf[x] = Math.min(depthOf[x], depthOf[y]);
+                        sets[x].or(sets[y]);
+                    }
+                    continue;
+                }
+
+                // x 的所有边都已访问, 若 x 是强连通分量的根, 则弹出整个分量
+                callSize--;
+                if (depthOf[x] == callDepth[callSize]) {
+                    int top;
+                    do {
+                        top = stack[--stackSize];
+                        depthOf[top] = Integer.MAX_VALUE;
+                        if (top != x) {
+                            sets[top].clear();
+                            sets[top].or(sets[x]);
+                        }
+                    } while (top != x);
+                }
+                if (callSize > 0) {
+                    final var parent = callNode[callSize - 1];
+                    depthOf[parent] = Math.min(depthOf[parent], depthOf[x]);
+                    sets[parent].or(sets[x]);
+                }
+            }
+        }
+    }
+
     // 我们在 Status.setAction/setGoto 中检查规约-规约冲突与移入-规约冲突
     // 如果有冲突, 它们会抛出 RuntimeException
 }
@@ -0,0 +1,108 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.function.Predicate;
+
+/**
+ * 略过单产生式 (形如 A -> B, 体为单个非终结符) 的规约
+ * <br>
+ * 对于表达式文法, 每个操作数都要依次规约 B -> id, A -> B, E -> A, 而后两次规约对观察者而言往往只是弹出一个值再压回.
+ * 所有观察者都不需要的单产生式 (见 {@link cn.edu.hitsz.compiler.parser.ActionObserver#needsReduce(Production)})
+ * 按以下两种方式略过:
+ * <ul>
+ *     <li>修改 goto 表: 若 goto(q, B) = t, 而状态 t 在任何向前看符号下都只会按 A -> B 规约, 则规约之后必然转移到 goto(q, A).
+ *     因此可以直接令 goto(q, B) = goto(q, A), 这样的单产生式规约不再执行. 该变换与向前看符号无关, 由 {@link #apply} 完成</li>
+ *     <li>其余单产生式的规约取决于向前看符号 (比如 E -> A 与 A -> A * B 共存的状态), 无法从表中去掉.
+ *     驱动程序执行这些规约时只替换栈顶状态, 不再通知观察者</li>
+ * </ul>
+ * 两种方式都只会在发现错误之前多走一步或少走一步规约, 不会改变移入的 token 序列.
+ */
+public class UnitProductionBypass {
+    /**
+     * @param production 产生式
+     * @return 是否为体为单个非终结符的单产生式
+     */
+    public static boolean isUnitProduction(Production production) {
+        return production.body().size() == 1 && production.body().get(0) instanceof NonTerminal;
+    }
+
+    /**
+     * 修改 goto 表, 使转移直接越过只会按可略过的单产生式规约的状态
+     *
+     * @param table      编译后的分析表
+     * @param bypassable 可以略过的产生式, 只会对单产生式调用
+     * @return 修改后的分析表, 原表不变
+     */
+    public static CompiledLRTable apply(CompiledLRTable table, Predicate<Production> bypassable) {
+        final var stateCount = table.getStateCount();
+        final var terminalCount = table.getTerminalCount();
+        final var nonTerminalCount = table.getNonTerminalCount();
+        final var actions = table.getActions();
+
+        // 每个状态若在所有向前看符号下都只按同一个可略过的单产生式规约, 记下该产生式, 否则为 -1
+        final var unitReductionOf = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            unitReductionOf[state] = onlyReduction(actions, state * terminalCount, terminalCount);
+            if (unitReductionOf[state] >= 0) {
+                final var production = table.getProduction(unitReductionOf[state]);
+                if (table.headOf(unitReductionOf[state]) < 0 || !isUnitProduction(production) || !bypassable.test(production)) {
+                    unitReductionOf[state] = -1;
+                }
+            }
+        }
+
+        final var gotos = table.getGotos().clone();
+        for (int state = 0; state < stateCount; state++) {
+            final var row = state * nonTerminalCount;
+            for (int column = 0; column < nonTerminalCount; column++) {
+                var target = gotos[row + column];
+                // 沿着单产生式链一直走到需要执行动作的状态, 合法的 LR 文法中不存在单产生式的环, 链长不超过非终结符数
+                for (int step = 0; step < nonTerminalCount && target != CompiledLRTable.NO_GOTO; step++) {
+                    final var production = unitReductionOf[target];
+                    if (production < 0) {
+                        break;
+                    }
+                    final var next = table.goto_(state, table.headOf(production));
+                    if (next == CompiledLRTable.NO_GOTO) {
+                        break;
+                    }
+                    target = next;
+                }
+                gotos[row + column] = target;
+            }
+        }
+
+        final var statuses = new Status[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            statuses[state] = table.getStatus(state);
+        }
+        return new CompiledLRTable(terminalCount, nonTerminalCount, table.getInitState(), table.getColumnByCode(),
+            actions, gotos, table.getHeads(), table.getProductions(), statuses);
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    /**
+     * @return 一行 action 中的非错误动作若全部是按同一个产生式规约, 返回该产生式的编号, 否则为 -1
+     */
+    private static int onlyReduction(int[] actions, int begin, int length) {
+        int production = -1;
+        for (int i = begin; i < begin + length; i++) {
+            final var action = actions[i];
+            if (action == CompiledLRTable.ERROR) {
+                continue;
+            }
+            if (CompiledLRTable.kindOf(action) != CompiledLRTable.REDUCE) {
+                return -1;
+            }
+            final var target = CompiledLRTable.targetOf(action);
+            if (production >= 0 && production != target) {
+                return -1;
+            }
+            production = target;
+        }
+        return production;
+    }
+
+    private UnitProductionBypass() {
+    }
+}
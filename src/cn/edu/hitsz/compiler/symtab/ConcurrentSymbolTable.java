@@ -0,0 +1,230 @@
+package cn.edu.hitsz.compiler.symtab;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 线程安全的符号表, 通过 {@link SymbolTable#concurrent()} 构造
+ * <br>
+ * 文本到编号的映射按哈希值的高位分成 {@link #STRIPES} 段, 每段是一个由自己的锁保护的开放定址哈希表.
+ * 不同段中的符号可以被多个线程同时查找与插入, 只有落在同一段中的操作才会互相等待.
+ * <br>
+ * 编号由 {@link AtomicInteger} 分配, 条目按编号存放在分块增长的数组中: 第 k 块的大小为 {@link #FIRST_CHUNK} * 2^k,
+ * 新块以 CAS 加入, 已有的块从不移动, 因此按编号读取条目时不需要加锁.
+ * 多个线程并发插入时编号仍然是连续的, 但编号的先后顺序取决于各线程插入的先后.
+ */
+class ConcurrentSymbolTable extends SymbolTable {
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public SymbolTableEntry get(String text) {
+        final var id = getId(text);
+        if (id < 0) {
+            throw new RuntimeException("Unknown symbol: " + text);
+        }
+        return entryOf(id);
+    }
+
+    @Override
+    public SymbolTableEntry get(int id) {
+        final var entry = id >= 0 && id < nextId.get() ? entryOf(id) : null;
+        if (entry == null) {
+            throw new RuntimeException("Unknown symbol id: " + id);
+        }
+        return entry;
+    }
+
+    @Override
+    public SymbolTableEntry add(String text) {
+        final var hash = text.hashCode();
+        final var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final var slot = stripe.find(text, hash);
+            if (stripe.ids[slot] != EMPTY) {
+                throw new RuntimeException("Symbol already exists: " + text);
+            }
+            return entryOf(stripe.insert(slot, text, hash));
+        }
+    }
+
+    @Override
+    public SymbolTableEntry getOrAdd(String text) {
+        final var hash = text.hashCode();
+        final var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final var slot = stripe.find(text, hash);
+            final var id = stripe.ids[slot] != EMPTY ? stripe.ids[slot] - 1 : stripe.insert(slot, text, hash);
+            return entryOf(id);
+        }
+    }
+
+    @Override
+    public int intern(ByteBuffer source, int begin, int end) {
+        final var hash = hashOf(source, begin, end);
+        final var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            final var slot = stripe.find(source, begin, end, hash);
+            if (stripe.ids[slot] != EMPTY) {
+                return stripe.ids[slot] - 1;
+            }
+            final var bytes = new byte[end - begin];
+            source.get(begin, bytes);
+            return stripe.insert(slot, new String(bytes, StandardCharsets.US_ASCII), hash);
+        }
+    }
+
+    @Override
+    public int getId(String text) {
+        final var hash = text.hashCode();
+        final var stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.ids[stripe.find(text, hash)] - 1;
+        }
+    }
+
+    @Override
+    public boolean has(String text) {
+        return getId(text) >= 0;
+    }
+
+    /**
+     * @return 已分配的编号数. 并发插入时, 编号刚被分配的条目可能要在其插入完成后才能读取
+     */
+    @Override
+    public int size() {
+        return nextId.get();
+    }
+
+    @Override
+    protected List<SymbolTableEntry> getAllEntries() {
+        final var size = size();
+        final var result = new ArrayList<SymbolTableEntry>(size);
+        for (int id = 0; id < size; id++) {
+            final var entry = entryOf(id);
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    //==================== 以下为实现相关代码 ==============================//
+
+    /** 段数, 为 2 的幂 */
+    private static final int STRIPES = 64;
+    private static final int STRIPE_BITS = Integer.numberOfTrailingZeros(STRIPES);
+    /** 第一块条目数组的大小, 为 2 的幂 */
+    private static final int FIRST_CHUNK = 64;
+    private static final int FIRST_CHUNK_BITS = Integer.numberOfTrailingZeros(FIRST_CHUNK);
+    private static final int EMPTY = 0;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger nextId = new AtomicInteger();
+    /** 按编号存放条目的各块, 块一旦加入就不再改变 */
+    private final AtomicReferenceArray<AtomicReferenceArray<SymbolTableEntry>> chunks =
+        new AtomicReferenceArray<>(Integer.SIZE - FIRST_CHUNK_BITS);
+
+    ConcurrentSymbolTable() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /** 段由打散后的哈希值的高位选出, 段内的槽位使用低位, 两者互不相关 */
+    private Stripe stripeOf(int hash) {
+        return stripes[mix(hash) >>> (Integer.SIZE - STRIPE_BITS)];
+    }
+
+    /**
+     * @return 编号为 id 的条目, 尚未插入完成时为 null
+     */
+    private SymbolTableEntry entryOf(int id) {
+        final var position = id + FIRST_CHUNK;
+        final var chunk = chunks.get(Integer.SIZE - 1 - Integer.numberOfLeadingZeros(position) - FIRST_CHUNK_BITS);
+        return chunk == null ? null : chunk.get(position - Integer.highestOneBit(position));
+    }
+
+    /** 分配编号, 构造并发布新条目 */
+    private int publish(String text) {
+        final var id = nextId.getAndIncrement();
+        final var position = id + FIRST_CHUNK;
+        final var index = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(position) - FIRST_CHUNK_BITS;
+        var chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new AtomicReferenceArray<>(FIRST_CHUNK << index));
+            chunk = chunks.get(index);
+        }
+        chunk.set(position - Integer.highestOneBit(position), new SymbolTableEntry(id, text));
+        return id;
+    }
+
+    /**
+     * 一段: 只保存编号与哈希值的开放定址哈希表, 所有访问都在 synchronized (this) 中进行
+     */
+    private final class Stripe {
+        /** 编号 + 1, 0 表示空槽. 长度总为 2 的幂, 且至少为条目数的两倍 */
+        int[] ids = new int[16];
+        int[] hashes = new int[16];
+        int size = 0;
+
+        int find(String text, int hash) {
+            final var mask = ids.length - 1;
+            int slot = mix(hash) & mask;
+            while (ids[slot] != EMPTY) {
+                if (hashes[slot] == hash && entryOf(ids[slot] - 1).getText().equals(text)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /** 与 {@link #find(String, int)} 相同, 但直接比较源文件缓冲区中的字节 */
+        int find(ByteBuffer source, int begin, int end, int hash) {
+            final var mask = ids.length - 1;
+            int slot = mix(hash) & mask;
+            while (ids[slot] != EMPTY) {
+                if (hashes[slot] == hash && textEquals(entryOf(ids[slot] - 1).getText(), source, begin, end)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        int insert(int slot, String text, int hash) {
+            final var id = publish(text);
+            ids[slot] = id + 1;
+            hashes[slot] = hash;
+            if (++size * 2 > ids.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            final var oldIds = ids;
+            final var oldHashes = hashes;
+            ids = new int[oldIds.length * 2];
+            hashes = new int[oldIds.length * 2];
+            final var mask = ids.length - 1;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != EMPTY) {
+                    int slot = mix(oldHashes[i]) & mask;
+                    while (ids[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    ids[slot] = oldIds[i];
+                    hashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+}
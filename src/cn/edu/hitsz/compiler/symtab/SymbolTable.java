@@ -3,10 +3,12 @@ package cn.edu.hitsz.compiler.symtab;
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * 符号表
@@ -14,9 +16,40 @@ import java.util.Map;
  * 由于源语言比较简易, 加之 Java 中具有非常好用的通用数据结构类型, 本项目其实并不一定需要一个集中的 "符号表" 来存储源语言中的
  * <b>所有符号的所有信息</b>. 但为了切合理论课程教学, 提高实验实践技能的通用性, 我们按照一般编译器项目中符号表的设计设计了该符号表.
  * 其在代码中的作用可能并不明显, 但我们希望同学们可以借此体验符号表的设计思想.
+ * <br>
+ * 每个符号在加入符号表时都会被分配一个从 0 开始连续递增的整数编号 (见 {@link SymbolTableEntry#getId()}).
+ * 后续各阶段可以用该编号代替符号的文本, 以数组代替以字符串为键的哈希表.
+ * <br>
+ * 符号表本身采用开放定址 (线性探测) 的哈希表: 槽位数组中只保存符号的编号, 条目按编号顺序存放在另一个数组中.
+ * 词法分析器可以直接用源文件缓冲区中的字节查找符号 ({@link #intern(ByteBuffer, int, int)}), 只有在符号第一次出现时才需要构造其文本.
+ * 该实现不是线程安全的, 需要被多个线程同时使用时请使用 {@link #concurrent()}.
  */
 public class SymbolTable {
-    private static final Map<String, SymbolTableEntry> symbolTableMap = new HashMap<>();
+    /**
+     * 构造一个只在单个线程中使用的符号表
+     */
+    public SymbolTable() {
+    }
+
+    /**
+     * 构造一个可以被多个线程同时读写的符号表
+     * <br>
+     * 其按哈希值分为若干段, 每段有自己的锁, 只有落在同一段中的查找与插入才会互相等待; 按编号读取条目与获取大小不需要加锁.
+     * 多个线程同时插入同一个标识符时, 只有一个线程会创建条目, 其余线程都会得到同一个条目.
+     *
+     * @return 线程安全的符号表
+     */
+    public static SymbolTable concurrent() {
+        return new ConcurrentSymbolTable();
+    }
+
+    /**
+     * @return 该符号表能否被多个线程同时读写
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * 获取符号表中已有的条目
      *
@@ -25,10 +58,25 @@ public class SymbolTable {
      * @throws RuntimeException 该符号在表中不存在
      */
     public SymbolTableEntry get(String text) {
-        if (!has(text)) {
-            throw new RuntimeException();
+        final var id = getId(text);
+        if (id < 0) {
+            throw new RuntimeException("Unknown symbol: " + text);
         }
-        return symbolTableMap.get(text);
+        return entries[id];
+    }
+
+    /**
+     * 根据编号获取符号表中已有的条目
+     *
+     * @param id 符号的编号
+     * @return 该符号在符号表中的条目
+     * @throws RuntimeException 该编号在表中不存在
+     */
+    public SymbolTableEntry get(int id) {
+        if (id < 0 || id >= size) {
+            throw new RuntimeException("Unknown symbol id: " + id);
+        }
+        return entries[id];
     }
 
     /**
@@ -39,12 +87,61 @@ public class SymbolTable {
      * @throws RuntimeException 该符号已在表中存在
      */
     public SymbolTableEntry add(String text) {
-        if (has(text)) {
-            throw new RuntimeException();
+        final var hash = text.hashCode();
+        final var slot = findSlot(text, hash);
+        if (slots[slot] != EMPTY) {
+            throw new RuntimeException("Symbol already exists: " + text);
+        }
+        return entries[insert(slot, text, hash)];
+    }
+
+    /**
+     * 获取符号表中的条目, 若不存在则新增. 对于线程安全的符号表, 该操作是原子的.
+     *
+     * @param text 符号的文本表示
+     * @return 该符号在符号表中的条目
+     */
+    public SymbolTableEntry getOrAdd(String text) {
+        final var hash = text.hashCode();
+        final var slot = findSlot(text, hash);
+        final var id = slots[slot] != EMPTY ? slots[slot] - 1 : insert(slot, text, hash);
+        return entries[id];
+    }
+
+    /**
+     * 以源文件缓冲区中 [begin, end) 范围内的 ASCII 文本为符号, 获取其编号, 若不存在则新增
+     * <br>
+     * 查找时直接比较缓冲区中的字节, 只有符号第一次出现时才会构造其文本
+     *
+     * @param source 源文件缓冲区
+     * @param begin  符号的起始位置
+     * @param end    符号的结束位置 (不含)
+     * @return 该符号的编号
+     */
+    public int intern(ByteBuffer source, int begin, int end) {
+        final var hash = hashOf(source, begin, end);
+        final var mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != EMPTY) {
+            final var id = slots[slot] - 1;
+            if (hashes[id] == hash && textEquals(entries[id].getText(), source, begin, end)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
         }
-        SymbolTableEntry symble = new SymbolTableEntry(text);
-        symbolTableMap.put(text, symble);
-        return symble;
+
+        final var bytes = new byte[end - begin];
+        source.get(begin, bytes);
+        return insert(slot, new String(bytes, StandardCharsets.US_ASCII), hash);
+    }
+
+    /**
+     * @param text 符号的文本表示
+     * @return 该符号的编号, 不存在时为 -1
+     */
+    public int getId(String text) {
+        final var slot = findSlot(text, text.hashCode());
+        return slots[slot] - 1;
     }
 
     /**
@@ -54,16 +151,23 @@ public class SymbolTable {
      * @return 该符号的条目是否位于符号表中
      */
     public boolean has(String text) {
-        return symbolTableMap.containsKey(text);
+        return getId(text) >= 0;
+    }
+
+    /**
+     * @return 符号表中的条目数, 所有符号的编号都小于该值
+     */
+    public int size() {
+        return size;
     }
 
     /**
      * 获得符号表的所有条目以供 {@code dumpTable} 使用
      *
-     * @return 符号表的所有条目
+     * @return 符号表的所有条目, 按编号排列
      */
-    private Map<String, SymbolTableEntry> getAllEntries() {
-        return symbolTableMap;
+    protected List<SymbolTableEntry> getAllEntries() {
+        return Arrays.asList(entries).subList(0, size);
     }
 
     /**
@@ -72,7 +176,7 @@ public class SymbolTable {
      * @param path 输出文件路径
      */
     public void dumpTable(String path) {
-        final var entriesInOrder = new ArrayList<>(getAllEntries().values());
+        final var entriesInOrder = new ArrayList<>(getAllEntries());
         entriesInOrder.sort(Comparator.comparing(SymbolTableEntry::getText));
 
         final var lines = new ArrayList<String>();
@@ -83,5 +187,92 @@ public class SymbolTable {
 
         FileUtils.writeLines(path, lines);
     }
-}
 
+    //==================== 以下为实现相关代码 ==============================//
+
+    private static final int EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** 槽位数组, 保存 编号 + 1, 0 表示空槽. 长度总为 2 的幂, 且至少为条目数的两倍 */
+    private int[] slots = new int[INITIAL_CAPACITY];
+    /** 按编号存放的条目与其文本的哈希值 */
+    private SymbolTableEntry[] entries = new SymbolTableEntry[INITIAL_CAPACITY / 2];
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+    private int size = 0;
+
+    /**
+     * @return 该文本所在的槽位, 或查找结束时遇到的空槽位
+     */
+    private int findSlot(String text, int hash) {
+        final var mask = slots.length - 1;
+        int slot = mix(hash) & mask;
+        while (slots[slot] != EMPTY) {
+            final var id = slots[slot] - 1;
+            if (hashes[id] == hash && entries[id].getText().equals(text)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * 在空槽位 slot 中插入新符号
+     *
+     * @return 新符号的编号
+     */
+    private int insert(int slot, String text, int hash) {
+        final var id = size++;
+        if (id == entries.length) {
+            entries = Arrays.copyOf(entries, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        entries[id] = new SymbolTableEntry(id, text);
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        final var mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = mix(hashes[id]) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /** 对 ASCII 文本, 按字节计算的结果与 String.hashCode 相同 */
+    static int hashOf(ByteBuffer source, int begin, int end) {
+        int hash = 0;
+        for (int i = begin; i < end; i++) {
+            hash = 31 * hash + (source.get(i) & 0xff);
+        }
+        return hash;
+    }
+
+    /** 打散哈希值的低位, 避免相似的标识符聚集在相邻的槽位中 */
+    static int mix(int hash) {
+        final var h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static boolean textEquals(String text, ByteBuffer source, int begin, int end) {
+        if (text.length() != end - begin) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != (source.get(begin + i) & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -5,13 +5,22 @@ package cn.edu.hitsz.compiler.symtab;
  */
 public class SymbolTableEntry {
     /**
+     * @param id   符号在符号表中的编号
      * @param text 符号的文本表示. 对于标识符符号, 该参数应该为标识符文本.
      */
-    public SymbolTableEntry(String text) {
+    public SymbolTableEntry(int id, String text) {
+        this.id = id;
         this.text = text;
         this.type = null;
     }
 
+    /**
+     * @return 符号在符号表中的编号, 同一符号表中的编号从 0 开始连续分配
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * @return 符号的文本表示
      */
@@ -32,7 +41,7 @@ public class SymbolTableEntry {
      *
      * @param type 该标识符符号可以绑定到的源语言对象的类型
      */
-    public void setType(SourceCodeType type) {
+    public synchronized void setType(SourceCodeType type) {
         if (this.type != null) {
             throw new RuntimeException("Can NOT set type for an entry twice");
         }
@@ -40,6 +49,8 @@ public class SymbolTableEntry {
         this.type = type;
     }
 
+    private final int id;
     private final String text;
-    private SourceCodeType type;
+    // 符号表可能被多个线程共享, 类型的写入需要对其它线程可见
+    private volatile SourceCodeType type;
 }
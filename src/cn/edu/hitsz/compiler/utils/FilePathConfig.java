@@ -26,6 +26,18 @@ public final class FilePathConfig {
     public final static String LR1_TABLE_PATH = "data/in/LR1_table.csv";
 
 
+    //==================================== 缓存文件 ========================================//
+    /**
+     * 编译后的 LR 分析表的二进制缓存, 输入文件变化时自动重新生成
+     */
+    public final static String LR_TABLE_CACHE_PATH = "data/out/lr_table.bin";
+
+    /**
+     * 语法分析的动作日志, 可以重放给各个 Observer 而无需再次进行词法与语法分析
+     */
+    public final static String PARSE_TRACE_PATH = "data/out/parse_trace.bin";
+
+
     //==================================== 输出文件 ========================================//
     /**
      * 词法单元流
@@ -52,6 +64,16 @@ public final class FilePathConfig {
      */
     public static final String INTERMEDIATE_CODE_PATH = "data/out/intermediate_code.txt";
 
+    /**
+     * 经过优化流水线之后的中间代码
+     */
+    public static final String OPTIMIZED_CODE_PATH = "data/out/optimized_code.txt";
+
+    /**
+     * 优化流水线中各 pass 的统计信息
+     */
+    public static final String PASS_STATISTICS_PATH = "data/out/pass_statistics.txt";
+
     /**
      * IR 模拟执行的结果
      */
@@ -4,49 +4,48 @@ import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
 import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.ir.InstructionBuffer;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
  * 用来模拟执行 IR 的类
+ * <br>
+ * 指令存放在 {@link InstructionBuffer} 中, 各变量的值按变量编号存放在 int 数组里, 执行过程中不分配对象.
  */
 public class IREmulator {
     public static IREmulator load(List<Instruction> instructions) {
+        return load(InstructionBuffer.of(instructions));
+    }
+
+    public static IREmulator load(InstructionBuffer instructions) {
         return new IREmulator(instructions);
     }
 
     public Optional<Integer> execute() {
-        for (final var instruction : instructions) {
-            switch (instruction.getKind()) {
+        final var cursor = instructions.cursor();
+        while (cursor.next()) {
+            switch (cursor.kind()) {
                 case MOV -> {
-                    final var from = eval(instruction.getFrom());
-                    environment.put(instruction.getResult(), from);
+                    // 与未赋值的变量相同, 从未赋值的变量赋值后仍然没有值
+                    final var from = cursor.from();
+                    if (hasValue(from)) {
+                        store(cursor.result(), eval(from));
+                    } else {
+                        assigned[cursor.result()] = false;
+                    }
                 }
 
-                case ADD -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs + rhs);
-                }
+                case ADD -> store(cursor.result(), eval(cursor.lhs()) + eval(cursor.rhs()));
 
-                case SUB -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs - rhs);
-                }
+                case SUB -> store(cursor.result(), eval(cursor.lhs()) - eval(cursor.rhs()));
 
-                case MUL -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs * rhs);
-                }
+                case MUL -> store(cursor.result(), eval(cursor.lhs()) * eval(cursor.rhs()));
 
-                case RET -> this.returnValue = eval(instruction.getReturnValue());
+                case RET -> this.returnValue = hasValue(cursor.returnValue()) ? eval(cursor.returnValue()) : null;
 
-                default -> throw new RuntimeException("Unknown instruction kind: " + instruction.getKind());
+                default -> throw new RuntimeException("Unknown instruction kind: " + cursor.kind());
             }
         }
 
@@ -57,19 +56,44 @@ public class IREmulator {
         if (value instanceof IRImmediate immediate) {
             return immediate.getValue();
         } else if (value instanceof IRVariable variable) {
-            return environment.get(variable);
+            final var id = instructions.findVariable(variable);
+            return id >= 0 && assigned[id] ? values[id] : null;
         } else {
             throw new RuntimeException("Unknown IR value type");
         }
     }
 
-    private IREmulator(List<Instruction> instructions) {
+    //==================== 以下为实现相关代码 ==============================//
+
+    private IREmulator(InstructionBuffer instructions) {
         this.instructions = instructions;
-        this.environment = new HashMap<>();
+        this.values = new int[instructions.variableCount()];
+        this.assigned = new boolean[instructions.variableCount()];
         this.returnValue = null;
     }
 
-    private final List<Instruction> instructions;
-    private final Map<IRVariable, Integer> environment;
+    private boolean hasValue(int operand) {
+        return InstructionBuffer.isImmediate(operand) || assigned[operand];
+    }
+
+    private int eval(int operand) {
+        if (InstructionBuffer.isImmediate(operand)) {
+            return instructions.immediateValue(operand);
+        }
+        if (!assigned[operand]) {
+            throw new RuntimeException("Variable %s is used before assigned".formatted(instructions.getVariable(operand)));
+        }
+        return values[operand];
+    }
+
+    private void store(int variable, int value) {
+        values[variable] = value;
+        assigned[variable] = true;
+    }
+
+    private final InstructionBuffer instructions;
+    /** 下标为变量的编号 */
+    private final int[] values;
+    private final boolean[] assigned;
     private Integer returnValue;
 }